@@ -1,54 +1,58 @@
 package poi.server.bootstrap;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeospatialIndex;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Component;
 import poi.server.model.Poi;
-import poi.server.repo.PoiRepository;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
+import java.io.IOException;
+import java.nio.file.Path;
 
 /**
  * This is run (onApplicationEvent) when the server starts.  It populates the database
- * with data from the file (if the collection is empty).
+ * with data from the file (if the collection is empty), using a PoiLoader.  The 2dsphere
+ * index on the location is created after the load, so it is built once instead of being
+ * updated by every insert.
  */
 @Component
 public class PoiBootstrap {
 
-    private PoiRepository repo;
-    public PoiBootstrap(PoiRepository repo ) {
-        this.repo = repo;
+    private final MongoOperations mongo;
+    private final String fileName;
+    private final int batchSize;
+    private final int threads;
+
+    public PoiBootstrap( MongoOperations mongo,
+                         @Value("${poi.bootstrap.file:places.txt}") String fileName,
+                         @Value("${poi.bootstrap.batch-size:1000}") int batchSize,
+                         @Value("${poi.bootstrap.threads:0}") int threads ) {
+        this.mongo = mongo;
+        this.fileName = fileName;
+        this.batchSize = batchSize;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
     }
 
     @EventListener
     public void onApplicationStart(ApplicationReadyEvent event) {
-        // Do nothing if the database is not empty
-        if( repo.count() != 0 ) { return; }
-
-        // Otherwise, fill with data from the file
-        String fileName = "places.txt";
-        System.out.println("Loading: " + fileName);
-        List<Poi> poiList = new ArrayList<>();
-        try( Scanner scan = new Scanner( new FileInputStream(fileName)) ) {
-            scan.useDelimiter("[\\t\\n]");  // Tab separated fields
-            while( scan.hasNext() ) {
-                String name = scan.next();
-                String address = scan.next();
-                String tags = scan.next();
-                double lat = scan.nextDouble();
-                double longitude = scan.nextDouble();
-                poiList.add( new Poi( name, address, tags, lat,longitude ) );
+        // Only load if the database is empty
+        if( mongo.count(new Query(), Poi.class) == 0 ) {
+            System.out.println("Loading: " + fileName);
+            try {
+                new PoiLoader(mongo, batchSize, threads).load(Path.of(fileName));
+            } catch( IOException | IllegalStateException e ) {
+                System.out.println("Unable to load: " + fileName);
+                e.printStackTrace();
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                return;
             }
-        } catch(FileNotFoundException e) {
-            System.out.println("Unable to load: " + fileName);
-            e.printStackTrace();
         }
 
-        // Save all to database
-        repo.saveAll(poiList);
+        mongo.indexOps(Poi.class).ensureIndex(new GeospatialIndex("location").typed(GeoSpatialIndexType.GEO_2DSPHERE));
     }
 }
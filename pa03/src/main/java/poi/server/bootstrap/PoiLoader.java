@@ -0,0 +1,155 @@
+package poi.server.bootstrap;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import poi.server.model.Poi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams a tab separated POI file into the database.  The calling thread reads the file in
+ * batches of lines; each batch is parsed and inserted with one unordered bulk write by a pool
+ * of worker threads.  At most two batches per worker are read ahead, so a slow database slows
+ * the reader down instead of filling the memory, and files of any size can be loaded.
+ *
+ * Each line holds: name, address, tags, latitude, longitude.
+ */
+public class PoiLoader {
+
+    // The time between progress reports in nanoseconds
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(2);
+
+    private final MongoOperations mongo;
+    private final int batchSize;
+    private final int threads;
+
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public PoiLoader( MongoOperations mongo, int batchSize, int threads ) {
+        this.mongo = mongo;
+        this.batchSize = Math.max(1, batchSize);
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Load a file.  Lines that cannot be parsed are skipped.
+     * @param file the file
+     * @return the number of POIs inserted
+     * @throws IOException if the file cannot be read
+     * @throws IllegalStateException if a bulk write failed; the batches already written remain
+     */
+    public long load( Path file ) throws IOException, InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        Semaphore permits = new Semaphore(2 * threads);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        long start = System.nanoTime(), lastReport = start;
+
+        try( BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8) ) {
+            List<String> batch = new ArrayList<>(batchSize);
+            String line;
+            while( (line = in.readLine()) != null && failure.get() == null ) {
+                batch.add(line);
+                if( batch.size() == batchSize ) {
+                    submit(batch, workers, permits, failure);
+                    batch = new ArrayList<>(batchSize);
+
+                    long now = System.nanoTime();
+                    if( now - lastReport >= REPORT_INTERVAL ) {
+                        report(start, now);
+                        lastReport = now;
+                    }
+                }
+            }
+            if( !batch.isEmpty() ) submit(batch, workers, permits, failure);
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        if( failure.get() != null ) throw new IllegalStateException("Bulk insert failed", failure.get());
+        report(start, System.nanoTime());
+        if( skipped.get() > 0 ) System.out.printf("Skipped %,d lines that could not be parsed%n", skipped.get());
+        return inserted.get();
+    }
+
+    /**
+     * Insert a batch on a worker thread, after waiting for a permit.
+     */
+    private void submit( List<String> lines, ExecutorService workers, Semaphore permits,
+                         AtomicReference<RuntimeException> failure ) throws InterruptedException {
+        permits.acquire();
+        workers.execute( () -> {
+            try {
+                insert(lines);
+            } catch( RuntimeException e ) {
+                failure.compareAndSet(null, e);
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    private void insert( List<String> lines ) {
+        List<Poi> pois = new ArrayList<>(lines.size());
+        for( String line : lines ) {
+            if( line.isBlank() ) continue;
+            Poi poi = parse(line);
+            if( poi == null ) {
+                skipped.incrementAndGet();
+                continue;
+            }
+            // Bulk writes do not set the ID of the object, so the listeners would not see it
+            poi.setId(new ObjectId().toHexString());
+            pois.add(poi);
+        }
+        if( pois.isEmpty() ) return;
+
+        mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, Poi.class).insert(pois).execute();
+        inserted.addAndGet(pois.size());
+    }
+
+    private void report( long start, long now ) {
+        double seconds = (now - start) / 1e9;
+        System.out.printf("Loaded %,d POIs in %.1f s (%,.0f rows/s)%n",
+                inserted.get(), seconds, seconds > 0 ? inserted.get() / seconds : 0.0);
+    }
+
+    /**
+     * Parse one line of the file.
+     * @param line the line
+     * @return the POI, or null if the line does not have five fields or the coordinates are
+     *         not numbers
+     */
+    static Poi parse( String line ) {
+        String[] fields = new String[5];
+        int begin = 0;
+        for( int i = 0; i < fields.length; i++ ) {
+            int end = i < fields.length - 1 ? line.indexOf('\t', begin) : line.length();
+            if( end < 0 ) return null;
+            fields[i] = line.substring(begin, end);
+            begin = end + 1;
+        }
+
+        try {
+            double latitude = Double.parseDouble(fields[3].strip());
+            double longitude = Double.parseDouble(fields[4].strip());
+            return new Poi(fields[0], fields[1], fields[2], latitude, longitude);
+        } catch( NumberFormatException e ) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package poi.server.cache;
+
+/**
+ * Estimates how often keys have been seen recently (a count-min sketch).  Each key has a
+ * counter in each of DEPTH rows, and its estimate is the smallest of them.  Counters stop at
+ * MAX_COUNT, and all counters are halved once the sketch has counted ten times as many keys as
+ * the cache holds, so old popularity fades away.
+ *
+ * This class is not thread safe; see ReadThroughCache.
+ */
+class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+
+    private final byte[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param capacity the maximum number of entries in the cache
+     */
+    FrequencySketch( int capacity ) {
+        int width = Integer.highestOneBit(Math.max(16, capacity - 1) * 2);
+        counters = new byte[DEPTH][width];
+        mask = width - 1;
+        sampleSize = 10 * Math.max(1, capacity);
+    }
+
+    void increment( Object key ) {
+        long hash = spread(key);
+        boolean added = false;
+        for( int i = 0; i < DEPTH; i++ ) {
+            int index = index(hash, i);
+            if( counters[i][index] < MAX_COUNT ) {
+                counters[i][index]++;
+                added = true;
+            }
+        }
+        if( added && ++additions == sampleSize ) reset();
+    }
+
+    int frequency( Object key ) {
+        long hash = spread(key);
+        int min = MAX_COUNT;
+        for( int i = 0; i < DEPTH; i++ ) {
+            min = Math.min(min, counters[i][index(hash, i)]);
+        }
+        return min;
+    }
+
+    private void reset() {
+        for( byte[] row : counters ) {
+            for( int j = 0; j < row.length; j++ ) row[j] >>= 1;
+        }
+        additions /= 2;
+    }
+
+    private int index( long hash, int row ) {
+        return (int) ((hash * SEEDS[row]) >>> 32) & mask;
+    }
+
+    private static long spread( Object key ) {
+        long h = key.hashCode();
+        return (h ^ (h << 32)) * 0xBF58476D1CE4E5B9L;
+    }
+}
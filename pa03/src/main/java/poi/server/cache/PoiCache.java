@@ -0,0 +1,150 @@
+package poi.server.cache;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeDeleteEvent;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.stereotype.Component;
+import poi.server.model.Poi;
+import poi.server.model.Review;
+import poi.server.repo.PoiRepository;
+import poi.server.repo.ReviewRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-through caches of POIs by ID and of the reviews of each POI.  Like PoiIndex, the
+ * caches are invalidated by the events Spring Data publishes for each save and delete, so
+ * every write through the repositories is seen, whichever code makes it:
+ *
+ * - a saved POI is dropped from the POI cache, and a saved review drops the reviews of its POI
+ *   (the API never moves a review to another POI);
+ * - a deleted POI drops the POI and its reviews;
+ * - deleted reviews drop the reviews of their POIs.  Deletes by ID do not say which POI the
+ *   review belonged to, so the reviews are looked up before the delete, and their POIs are
+ *   kept by review ID until after it.  A delete that fails leaves its entries behind, which
+ *   costs at most one needless invalidation if the review is deleted again later.
+ *
+ * A delete by any other query drops the whole cache.
+ */
+@Component
+public class PoiCache {
+
+    private final PoiRepository poiRepo;
+    private final ReviewRepository reviewRepo;
+    private final MongoOperations mongo;
+    private final String poiCollection;
+    private final String reviewCollection;
+
+    private final ReadThroughCache<String, Poi> pois;
+    private final ReadThroughCache<String, List<Review>> reviews;
+
+    // The POI ID of each review being deleted by ID, from before to after the delete
+    private final Map<String, String> deleting = new ConcurrentHashMap<>();
+
+    public PoiCache( PoiRepository poiRepo, ReviewRepository reviewRepo, MongoOperations mongo,
+                     @Value("${poi.cache.size:10000}") int size,
+                     @Value("${poi.cache.ttl-seconds:300}") long ttlSeconds ) {
+        this.poiRepo = poiRepo;
+        this.reviewRepo = reviewRepo;
+        this.mongo = mongo;
+        this.poiCollection = mongo.getCollectionName(Poi.class);
+        this.reviewCollection = mongo.getCollectionName(Review.class);
+        this.pois = new ReadThroughCache<>(size, ttlSeconds);
+        this.reviews = new ReadThroughCache<>(size, ttlSeconds);
+    }
+
+    /**
+     * @return the POI with an ID.  The POI is shared and must not be changed.
+     */
+    public Optional<Poi> findPoi( String id ) {
+        return Optional.ofNullable(pois.get(id, key -> poiRepo.findById(key).orElse(null)));
+    }
+
+    /**
+     * @return the reviews of a POI, which must not be changed
+     */
+    public List<Review> findReviews( String poiId ) {
+        return reviews.get(poiId, key -> List.copyOf(reviewRepo.findAllByPoiId(key)));
+    }
+
+    /**
+     * @return the counters of the POI cache ("poi") and the review cache ("reviews")
+     */
+    public Map<String, ReadThroughCache.Stats> stats() {
+        return Map.of("poi", pois.stats(), "reviews", reviews.stats());
+    }
+
+    @EventListener
+    public void onAfterSave( AfterSaveEvent<?> event ) {
+        if( event.getSource() instanceof Poi poi && poi.getId() != null ) {
+            pois.invalidate(poi.getId());
+        } else if( event.getSource() instanceof Review review && review.getPoiId() != null ) {
+            reviews.invalidate(review.getPoiId());
+        }
+    }
+
+    @EventListener
+    public void onBeforeDelete( BeforeDeleteEvent<?> event ) {
+        Document query = event.getSource();
+        if( reviewCollection.equals(event.getCollectionName()) && ids(query) != null ) {
+            for( Review review : mongo.find(new BasicQuery(query), Review.class) ) {
+                if( review.getPoiId() == null ) continue;
+                reviews.invalidate(review.getPoiId());
+                deleting.put(review.getId(), review.getPoiId());
+            }
+        }
+    }
+
+    @EventListener
+    public void onAfterDelete( AfterDeleteEvent<?> event ) {
+        Document query = event.getSource();
+        if( poiCollection.equals(event.getCollectionName()) ) {
+            Collection<String> ids = ids(query);
+            if( ids == null ) {
+                pois.invalidateAll();
+                reviews.invalidateAll();
+                return;
+            }
+            for( String id : ids ) {
+                pois.invalidate(id);
+                reviews.invalidate(id);
+            }
+        } else if( reviewCollection.equals(event.getCollectionName()) ) {
+            Collection<String> ids = ids(query);
+            if( query.size() == 1 && query.get("poiId") instanceof String poiId ) {
+                reviews.invalidate(poiId);
+            } else if( ids != null ) {
+                // Again, in case the reviews were loaded while they were being deleted
+                for( String id : ids ) {
+                    String poiId = deleting.remove(id);
+                    if( poiId != null ) reviews.invalidate(poiId);
+                }
+            } else {
+                reviews.invalidateAll();
+            }
+        }
+    }
+
+    /**
+     * @return the IDs a query selects if it is a query by ID or list of IDs, otherwise null
+     */
+    private static Collection<String> ids( Document query ) {
+        if( query.size() != 1 ) return null;
+        Object id = query.get("_id");
+        if( id == null ) return null;
+        if( !(id instanceof Document d) ) return List.of(id.toString());
+        if( d.size() == 1 && d.get("$in") instanceof Collection<?> in ) {
+            return in.stream().map(Object::toString).toList();
+        }
+        return null;
+    }
+}
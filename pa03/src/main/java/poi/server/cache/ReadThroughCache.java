@@ -0,0 +1,152 @@
+package poi.server.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded cache that loads missing values itself.  Entries expire a fixed time after they
+ * were loaded.
+ *
+ * New entries go to a small LRU window (about 1% of the capacity).  When the window is full,
+ * its least recently used entry becomes a candidate for the main LRU area, and is admitted
+ * only if it has been requested more often recently than the entry it would replace there
+ * (W-TinyLFU).  The request counts are estimated by a FrequencySketch of every get, so a
+ * burst of keys that are requested once cannot push the popular keys out.
+ *
+ * Values are loaded without holding the lock.  A load that overlaps an invalidation of its
+ * key returns its value but does not cache it, so a value read before a write can never be
+ * cached after the write's invalidation.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values; they are shared by all callers and must not be changed
+ */
+public class ReadThroughCache<K, V> {
+
+    // The number of independent invalidation generations
+    private static final int STRIPES = 64;
+
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final long ttlNanos;
+
+    private final Map<K, Node<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<K, Node<V>> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+
+    // Incremented by each invalidation of a key in the stripe
+    private final long[] generations = new long[STRIPES];
+
+    private long hits, misses, evictions, expirations;
+
+    private record Node<V>( V value, long expires ) { }
+
+    /**
+     * The counters of a cache.  Evictions are entries dropped to stay within the capacity,
+     * including candidates that were not admitted; expirations are entries found too old.
+     */
+    public record Stats( long hits, long misses, long evictions, long expirations, int size ) {
+        public double getHitRatio() {
+            return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+        }
+    }
+
+    /**
+     * @param capacity the maximum number of entries
+     * @param ttlSeconds the time in seconds after which an entry is loaded again
+     */
+    public ReadThroughCache( int capacity, long ttlSeconds ) {
+        capacity = Math.max(2, capacity);
+        this.windowCapacity = Math.max(1, capacity / 100);
+        this.mainCapacity = capacity - windowCapacity;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    /**
+     * Get a value, loading and caching it if it is not cached.
+     * @param key the key
+     * @param loader loads the value of a key, or returns null if there is none; nulls are
+     *               not cached
+     * @return the value, or null
+     */
+    public V get( K key, Function<K, V> loader ) {
+        long generation;
+        synchronized( this ) {
+            sketch.increment(key);
+            Node<V> node = window.get(key);
+            if( node == null ) node = main.get(key);
+            if( node != null ) {
+                if( node.expires() - System.nanoTime() > 0 ) {
+                    hits++;
+                    return node.value();
+                }
+                window.remove(key);
+                main.remove(key);
+                expirations++;
+            }
+            misses++;
+            generation = generations[stripe(key)];
+        }
+
+        V value = loader.apply(key);
+        if( value != null ) {
+            synchronized( this ) {
+                if( generations[stripe(key)] == generation ) put(key, value);
+            }
+        }
+        return value;
+    }
+
+    public synchronized void invalidate( K key ) {
+        generations[stripe(key)]++;
+        window.remove(key);
+        main.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        for( int i = 0; i < STRIPES; i++ ) generations[i]++;
+        window.clear();
+        main.clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, expirations, window.size() + main.size());
+    }
+
+    private void put( K key, V value ) {
+        // Another thread may have loaded the same key
+        window.remove(key);
+        main.remove(key);
+        window.put(key, new Node<>(value, System.nanoTime() + ttlNanos));
+        if( window.size() <= windowCapacity ) return;
+
+        Map.Entry<K, Node<V>> candidate = removeEldest(window);
+        if( main.size() < mainCapacity ) {
+            main.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+
+        // The candidate replaces the least recently used entry only if it is more popular
+        K victim = main.keySet().iterator().next();
+        if( sketch.frequency(candidate.getKey()) > sketch.frequency(victim) ) {
+            main.remove(victim);
+            main.put(candidate.getKey(), candidate.getValue());
+        }
+        evictions++;
+    }
+
+    private static <K, V> Map.Entry<K, V> removeEldest( Map<K, V> map ) {
+        Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+        Map.Entry<K, V> eldest = it.next();
+        Map.Entry<K, V> copy = Map.entry(eldest.getKey(), eldest.getValue());
+        it.remove();
+        return copy;
+    }
+
+    private static int stripe( Object key ) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+}
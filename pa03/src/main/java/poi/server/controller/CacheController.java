@@ -0,0 +1,26 @@
+package poi.server.controller;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import poi.server.cache.PoiCache;
+import poi.server.cache.ReadThroughCache;
+
+import java.util.Map;
+
+/**
+ * Reports the hits, misses and evictions of the caches, for sizing them.
+ */
+@RestController
+public class CacheController {
+
+    private final PoiCache cache;
+
+    public CacheController( PoiCache cache ) {
+        this.cache = cache;
+    }
+
+    @GetMapping("/cache/stats")
+    public Map<String, ReadThroughCache.Stats> stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,89 @@
+package poi.server.controller;
+
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import poi.server.cache.PoiCache;
+import poi.server.index.PoiIndex;
+import poi.server.model.Poi;
+import poi.server.repo.PoiRepository;
+import poi.server.repo.ReviewRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The /poi endpoints.  Searches are answered from the PoiIndex and POIs are read through
+ * the PoiCache; writes go to the database.
+ */
+@RestController
+@RequestMapping("/poi")
+public class PoiController {
+
+    private final PoiRepository repo;
+    private final ReviewRepository reviewRepo;
+    private final PoiIndex index;
+    private final PoiCache cache;
+
+    public PoiController( PoiRepository repo, ReviewRepository reviewRepo, PoiIndex index, PoiCache cache ) {
+        this.repo = repo;
+        this.reviewRepo = reviewRepo;
+        this.index = index;
+        this.cache = cache;
+    }
+
+    /**
+     * Find the POIs near a point, nearest first.
+     * @param lat the latitude of the point
+     * @param longitude the longitude of the point
+     * @param radius the distance in miles
+     * @param search optional text that the name or tags must contain
+     */
+    @GetMapping
+    public List<Poi> search( @RequestParam double lat, @RequestParam("long") double longitude,
+                             @RequestParam double radius, @RequestParam(required = false) String search ) {
+        return index.search(lat, longitude, radius, search);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Poi> getById( @PathVariable String id ) {
+        return ResponseEntity.of(cache.findPoi(id));
+    }
+
+    @PostMapping
+    public ResponseEntity<Poi> create( @RequestBody Poi poi ) {
+        // The database assigns the ID
+        poi.setId(null);
+        return ResponseEntity.status(HttpStatus.CREATED).body(repo.save(poi));
+    }
+
+    @PatchMapping("/{id}/location")
+    public ResponseEntity<Poi> updateLocation( @PathVariable String id, @RequestBody GeoJsonPoint location ) {
+        Optional<Poi> poi = repo.findById(id);
+        if( poi.isEmpty() ) return ResponseEntity.notFound().build();
+
+        poi.get().setLocation(location);
+        return ResponseEntity.ok(repo.save(poi.get()));
+    }
+
+    /**
+     * Delete a POI and its reviews.
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete( @PathVariable String id ) {
+        if( !repo.existsById(id) ) return ResponseEntity.notFound().build();
+
+        reviewRepo.deleteAllByPoiId(id);
+        repo.deleteById(id);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,69 @@
+package poi.server.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import poi.server.cache.PoiCache;
+import poi.server.model.Review;
+import poi.server.repo.ReviewRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The review endpoints.  The reviews of a POI are read through the PoiCache.
+ */
+@RestController
+public class ReviewController {
+
+    private final ReviewRepository repo;
+    private final PoiCache cache;
+
+    public ReviewController( ReviewRepository repo, PoiCache cache ) {
+        this.repo = repo;
+        this.cache = cache;
+    }
+
+    @GetMapping("/poi/{poiId}/reviews")
+    public ResponseEntity<List<Review>> getReviews( @PathVariable String poiId ) {
+        if( cache.findPoi(poiId).isEmpty() ) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(cache.findReviews(poiId));
+    }
+
+    @PostMapping("/poi/{poiId}/reviews")
+    public ResponseEntity<Review> create( @PathVariable String poiId, @RequestBody Review review ) {
+        if( cache.findPoi(poiId).isEmpty() ) return ResponseEntity.notFound().build();
+
+        // The database assigns the ID, and the POI comes from the path
+        review.setId(null);
+        review.setPoiId(poiId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(repo.save(review));
+    }
+
+    /**
+     * Change the stars and text of a review.  The ID and POI in the body are ignored.
+     */
+    @PutMapping("/reviews/{id}")
+    public ResponseEntity<Review> update( @PathVariable String id, @RequestBody Review review ) {
+        Optional<Review> existing = repo.findById(id);
+        if( existing.isEmpty() ) return ResponseEntity.notFound().build();
+
+        existing.get().setStars(review.getStars());
+        existing.get().setReview(review.getReview());
+        return ResponseEntity.ok(repo.save(existing.get()));
+    }
+
+    @DeleteMapping("/reviews/{id}")
+    public ResponseEntity<Void> delete( @PathVariable String id ) {
+        if( !repo.existsById(id) ) return ResponseEntity.notFound().build();
+
+        repo.deleteById(id);
+        return ResponseEntity.noContent().build();
+    }
+}
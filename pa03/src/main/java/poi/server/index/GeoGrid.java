@@ -0,0 +1,204 @@
+package poi.server.index;
+
+import poi.server.model.Poi;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory spatial index of POIs.  The POIs are kept in a grid of cells of CELL_DEGREES
+ * degrees of latitude and longitude.  A radius search visits only the cells that overlap the
+ * bounding box of the circle, and filters the POIs in those cells by great-circle distance.
+ *
+ * This class is not thread safe; see PoiIndex.
+ */
+public class GeoGrid {
+
+    /** The mean radius of the Earth in miles, the same value MongoDB queries use. */
+    public static final double EARTH_RADIUS_MILES = 3963.191;
+
+    // The size of a cell in degrees (about 0.7 miles of latitude)
+    private static final double CELL_DEGREES = 0.01;
+
+    // The number of cells around a circle of latitude
+    private static final int COLUMNS = (int) Math.round(360.0 / CELL_DEGREES);
+
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+    private final Map<String, Entry> byId = new HashMap<>();
+
+    /**
+     * A POI with its position in radians.
+     */
+    private static final class Entry {
+        final Poi poi;
+        final long cell;
+        final double lat, lon, cosLat;
+
+        Entry( Poi poi, double latitude, double longitude ) {
+            this.poi = poi;
+            this.cell = cellOf(latitude, longitude);
+            this.lat = Math.toRadians(latitude);
+            this.lon = Math.toRadians(longitude);
+            this.cosLat = Math.cos(lat);
+        }
+    }
+
+    private record Hit( double distance, Poi poi ) { }
+
+    /**
+     * Add a POI, replacing any POI with the same ID.  POIs without an ID or location are
+     * not indexed.
+     * @param poi the POI
+     */
+    public void put( Poi poi ) {
+        remove(poi.getId());
+        if( poi.getId() == null || poi.getLocation() == null ) return;
+
+        Entry entry = new Entry(poi, poi.getLocation().getY(), poi.getLocation().getX());
+        byId.put(poi.getId(), entry);
+        cells.computeIfAbsent(entry.cell, k -> new ArrayList<>()).add(entry);
+    }
+
+    /**
+     * Remove a POI.
+     * @param id the ID of the POI
+     * @return the POI that was removed, or null if there was none
+     */
+    public Poi remove( String id ) {
+        Entry entry = id == null ? null : byId.remove(id);
+        if( entry == null ) return null;
+
+        List<Entry> cell = cells.get(entry.cell);
+        cell.remove(entry);
+        if( cell.isEmpty() ) cells.remove(entry.cell);
+        return entry.poi;
+    }
+
+    public void clear() {
+        cells.clear();
+        byId.clear();
+    }
+
+    public int size() { return byId.size(); }
+
+    /**
+     * Find the POIs within a distance of a point.
+     * @param latitude the latitude of the center in degrees
+     * @param longitude the longitude of the center in degrees
+     * @param radius the distance in miles
+     * @return the POIs whose great-circle distance from the center is at most radius, nearest first
+     */
+    public List<Poi> near( double latitude, double longitude, double radius ) {
+        return near(latitude, longitude, radius, null);
+    }
+
+    /**
+     * Find the POIs within a distance of a point, among a set of POIs.  This costs time
+     * proportional to the smaller of the filter's candidates and the POIs in the cells around
+     * the circle.
+     * @param latitude the latitude of the center in degrees
+     * @param longitude the longitude of the center in degrees
+     * @param radius the distance in miles
+     * @param filter the POIs to consider, or null for all
+     * @return the POIs whose great-circle distance from the center is at most radius, nearest first
+     */
+    List<Poi> near( double latitude, double longitude, double radius, IdFilter filter ) {
+        if( !(radius >= 0) || (filter != null && filter.size() == 0) ) return List.of();
+
+        double lat = Math.toRadians(latitude), lon = Math.toRadians(longitude), cosLat = Math.cos(lat);
+        double angle = radius / EARTH_RADIUS_MILES;
+        List<Hit> hits = new ArrayList<>();
+        List<List<Entry>> candidates = candidateCells(latitude, longitude, angle);
+        if( filter != null && filter.size() < count(candidates) ) {
+            for( String id : filter.candidates() ) {
+                Entry e = byId.get(id);
+                if( e == null || !filter.contains(id) ) continue;
+                double d = distance(lat, lon, cosLat, e);
+                if( d <= angle ) hits.add(new Hit(d, e.poi));
+            }
+        } else {
+            for( List<Entry> cell : candidates != null ? candidates : cells.values() ) {
+                for( Entry e : cell ) {
+                    if( filter != null && !filter.contains(e.poi.getId()) ) continue;
+                    double d = distance(lat, lon, cosLat, e);
+                    if( d <= angle ) hits.add(new Hit(d, e.poi));
+                }
+            }
+        }
+
+        hits.sort(Comparator.comparingDouble(Hit::distance));
+        List<Poi> result = new ArrayList<>(hits.size());
+        for( Hit hit : hits ) result.add(hit.poi());
+        return result;
+    }
+
+    private int count( List<List<Entry>> candidates ) {
+        if( candidates == null ) return byId.size();
+        int count = 0;
+        for( List<Entry> cell : candidates ) count += cell.size();
+        return count;
+    }
+
+    /**
+     * The cells that overlap the bounding box of a circle, or null for all cells if there are
+     * fewer cells than that.
+     */
+    private List<List<Entry>> candidateCells( double latitude, double longitude, double angle ) {
+        double dLat = Math.toDegrees(angle);
+        double minLat = latitude - dLat, maxLat = latitude + dLat;
+
+        // The longitudes covered by the circle, unless it contains a pole
+        int columns = COLUMNS;
+        double minLon = -180.0;
+        if( minLat > -90.0 && maxLat < 90.0 ) {
+            double s = Math.sin(angle) / Math.cos(Math.toRadians(latitude));
+            if( s < 1.0 ) {
+                double dLon = Math.toDegrees(Math.asin(s));
+                minLon = longitude - dLon;
+                columns = Math.min(COLUMNS, column(longitude + dLon) - column(minLon) + 1);
+            }
+        }
+        int firstRow = row(Math.max(minLat, -90.0)), lastRow = row(Math.min(maxLat, 90.0));
+        int firstColumn = column(minLon);
+
+        if( (long) (lastRow - firstRow + 1) * columns >= cells.size() ) return null;
+
+        List<List<Entry>> result = new ArrayList<>();
+        for( int r = firstRow; r <= lastRow; r++ ) {
+            for( int c = 0; c < columns; c++ ) {
+                List<Entry> cell = cells.get(key(r, Math.floorMod(firstColumn + c, COLUMNS)));
+                if( cell != null ) result.add(cell);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The great-circle distance in radians between a point and an entry (haversine formula).
+     */
+    private static double distance( double lat, double lon, double cosLat, Entry e ) {
+        double sinLat = Math.sin((e.lat - lat) / 2), sinLon = Math.sin((e.lon - lon) / 2);
+        double h = sinLat * sinLat + cosLat * e.cosLat * sinLon * sinLon;
+        return 2 * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
+    private static int row( double latitude ) {
+        return (int) Math.floor((latitude + 90.0) / CELL_DEGREES);
+    }
+
+    // Not wrapped, so that a range of columns can be counted across the antimeridian
+    private static int column( double longitude ) {
+        return (int) Math.floor((longitude + 180.0) / CELL_DEGREES);
+    }
+
+    private static long key( int row, int column ) {
+        return (long) row * COLUMNS + column;
+    }
+
+    private static long cellOf( double latitude, double longitude ) {
+        return key(row(latitude), Math.floorMod(column(longitude), COLUMNS));
+    }
+}
@@ -0,0 +1,20 @@
+package poi.server.index;
+
+/**
+ * A set of POI IDs that a search is restricted to.  It can either be enumerated through a
+ * list of candidates or tested one ID at a time, so a search can do whichever is cheaper.
+ */
+interface IdFilter {
+
+    /**
+     * @return the number of candidates, an upper bound of the size of the set
+     */
+    int size();
+
+    /**
+     * @return IDs that include every ID of the set, and possibly others
+     */
+    Iterable<String> candidates();
+
+    boolean contains( String id );
+}
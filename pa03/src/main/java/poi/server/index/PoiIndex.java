@@ -0,0 +1,139 @@
+package poi.server.index;
+
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+import poi.server.model.Poi;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory copy of the POI collection that answers radius and text searches without a
+ * database query.  It is loaded when the server starts, and then kept up to date by listening
+ * to the events that Spring Data publishes after each save, insert and delete of a Poi, so
+ * writes made through the repositories (or MongoOperations) are seen by the next search.
+ * Deletes by a query other than the ID reload the whole collection.  Updates that bypass the
+ * mapping events (for example MongoOperations.updateMulti) must be followed by a call to
+ * rebuild().
+ */
+@Component
+public class PoiIndex {
+
+    private final MongoOperations mongo;
+    private final String collection;
+
+    private final GeoGrid grid = new GeoGrid();
+    private final TextIndex text = new TextIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public PoiIndex( MongoOperations mongo ) {
+        this.mongo = mongo;
+        this.collection = mongo.getCollectionName(Poi.class);
+    }
+
+    @EventListener
+    public void onApplicationStart( ApplicationReadyEvent event ) {
+        rebuild();
+    }
+
+    /**
+     * Reload the index from the database.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            grid.clear();
+            text.clear();
+            for( Poi poi : mongo.findAll(Poi.class) ) {
+                grid.put(poi);
+                text.put(poi);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the POIs within a distance of a point.
+     * @param latitude the latitude of the center in degrees
+     * @param longitude the longitude of the center in degrees
+     * @param radius the distance in miles
+     * @param search if not null or empty, only POIs whose name or tags contain this string
+     *               (ignoring case) are returned.  Whitespace is part of the string.
+     * @return the POIs within the distance, nearest first
+     */
+    public List<Poi> search( double latitude, double longitude, double radius, String search ) {
+        lock.readLock().lock();
+        try {
+            if( search == null || search.isEmpty() ) return grid.near(latitude, longitude, radius);
+            return grid.near(latitude, longitude, radius, text.find(search));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onAfterSave( AfterSaveEvent<?> event ) {
+        if( !(event.getSource() instanceof Poi poi) ) return;
+
+        // Index a copy, the caller may go on to change the saved object
+        Poi copy = new Poi();
+        copy.setId(poi.getId());
+        copy.setName(poi.getName());
+        copy.setAddress(poi.getAddress());
+        copy.setTags(poi.getTags());
+        copy.setLocation(poi.getLocation());
+
+        lock.writeLock().lock();
+        try {
+            grid.put(copy);
+            text.put(copy);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The source of a delete event is the query, not the deleted documents.  A query by ID
+     * (or a list of IDs) removes those POIs, an empty query clears the index, and anything
+     * else reloads it.
+     */
+    @EventListener
+    public void onAfterDelete( AfterDeleteEvent<?> event ) {
+        if( !collection.equals(event.getCollectionName()) ) return;
+
+        Document query = event.getSource();
+        Object id = query.get("_id");
+        if( query.size() > 1 || (!query.isEmpty() && id == null) ) {
+            rebuild();
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if( query.isEmpty() ) {
+                grid.clear();
+                text.clear();
+            } else if( id instanceof Document d && d.get("$in") instanceof Collection<?> ids ) {
+                for( Object each : ids ) {
+                    grid.remove(each.toString());
+                    text.remove(each.toString());
+                }
+            } else if( id instanceof Document ) {
+                rebuild();
+            } else {
+                grid.remove(id.toString());
+                text.remove(id.toString());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package poi.server.index;
+
+import poi.server.model.Poi;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An inverted index of the name and tags of the POIs, for case-insensitive substring search.
+ * Every substring of up to GRAM characters (the n-grams) has a posting list of the POIs that
+ * contain it.  A query of up to GRAM characters is answered by its posting list alone; a longer
+ * query is answered by the shortest posting list of its n-grams, checking each candidate.  The
+ * name and tags are indexed separately, so a match cannot span the two.
+ *
+ * This class is not thread safe; see PoiIndex.
+ */
+public class TextIndex {
+
+    // The length of the longest n-gram
+    private static final int GRAM = 3;
+
+    // Separates the name from the tags in the indexed text; never part of an n-gram
+    private static final char SEPARATOR = '\n';
+
+    private final Map<String, Set<String>> postings = new HashMap<>();
+
+    // The indexed text of each POI
+    private final Map<String, String> texts = new HashMap<>();
+
+    /**
+     * Add a POI, replacing any POI with the same ID.
+     * @param poi the POI
+     */
+    public void put( Poi poi ) {
+        remove(poi.getId());
+        if( poi.getId() == null ) return;
+
+        String text = normalize(poi.getName()) + SEPARATOR + normalize(poi.getTags());
+        texts.put(poi.getId(), text);
+        for( String gram : grams(text) ) {
+            postings.computeIfAbsent(gram, k -> new HashSet<>()).add(poi.getId());
+        }
+    }
+
+    /**
+     * Remove a POI.
+     * @param id the ID of the POI
+     */
+    public void remove( String id ) {
+        String text = id == null ? null : texts.remove(id);
+        if( text == null ) return;
+
+        for( String gram : grams(text) ) {
+            Set<String> ids = postings.get(gram);
+            ids.remove(id);
+            if( ids.isEmpty() ) postings.remove(gram);
+        }
+    }
+
+    public void clear() {
+        postings.clear();
+        texts.clear();
+    }
+
+    /**
+     * Find the POIs whose name or tags contain a string, ignoring case.  The posting lists are
+     * not copied, so the filter is only valid until the index is changed.
+     * @param search the search string, not empty
+     * @return the IDs of the matching POIs
+     */
+    IdFilter find( String search ) {
+        String query = normalize(search);
+        if( query.indexOf(SEPARATOR) >= 0 ) return filter(Set.of(), null);
+        if( query.length() <= GRAM ) return filter(postings.getOrDefault(query, Set.of()), null);
+
+        // The candidates are the shortest posting list of the query's n-grams.  The n-grams may
+        // occur in the wrong order, so each candidate is checked against its text.
+        Set<String> smallest = null;
+        for( int i = 0; i + GRAM <= query.length(); i++ ) {
+            Set<String> ids = postings.get(query.substring(i, i + GRAM));
+            if( ids == null ) return filter(Set.of(), null);
+            if( smallest == null || ids.size() < smallest.size() ) smallest = ids;
+        }
+        return filter(smallest, query);
+    }
+
+    /**
+     * @param ids the candidates
+     * @param query if not null, the text of a candidate must also contain this
+     */
+    private IdFilter filter( Set<String> ids, String query ) {
+        return new IdFilter() {
+            @Override
+            public int size() { return ids.size(); }
+
+            @Override
+            public Iterable<String> candidates() { return ids; }
+
+            @Override
+            public boolean contains( String id ) {
+                if( query == null ) return ids.contains(id);
+                String text = texts.get(id);
+                return text != null && text.contains(query);
+            }
+        };
+    }
+
+    private static String normalize( String s ) {
+        return s == null ? "" : s.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The distinct substrings of text of 1 to GRAM characters that do not contain the separator.
+     */
+    private static Set<String> grams( String text ) {
+        Set<String> grams = new HashSet<>();
+        for( int i = 0; i < text.length(); i++ ) {
+            for( int n = 1; n <= GRAM && i + n <= text.length(); n++ ) {
+                if( text.charAt(i + n - 1) == SEPARATOR ) break;
+                grams.add(text.substring(i, i + n));
+            }
+        }
+        return grams;
+    }
+}
@@ -2,8 +2,6 @@ package poi.server.model;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
-import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
-import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 /**
@@ -18,7 +16,7 @@ public class Poi {
     private String address;
     private String tags;
 
-    @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+    // The 2dsphere index is created by PoiBootstrap after the data is loaded
     private GeoJsonPoint location;
 
     public Poi() {
@@ -64,17 +62,6 @@ public class Poi {
         this.location = location;
     }
 
-    /**
-     * Returns whether the provided string is a substring of the
-     * name or tags of this object.
-     * @param search the search string
-     * @return true if there is a match
-     */
-    public boolean match( String search ) {
-        String compare = name.toLowerCase() + tags.toLowerCase();
-        return compare.contains(search.toLowerCase());
-    }
-
     @Override
     public boolean equals( Object other ) {
         if( other == this ) return true;
@@ -17,9 +17,11 @@ import poi.server.model.Poi;
 import poi.server.repo.PoiRepository;
 
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -125,6 +127,22 @@ public class PoiTests {
         assertArrayEquals(expected,result);
     }
 
+    @Test
+    public void testSearchText() throws Exception {
+        Poi[] result = search(47.146196, -122.435043, 0.03, "restaurant");
+        assertEquals(3, result.length);
+        assertEquals("Farrelli's Pizza, Parkland", result[0].getName());
+
+        result = search(47.146196, -122.435043, 0.03, "PIT");
+        assertEquals(1, result.length);
+        assertEquals("Pita Pit", result[0].getName());
+
+        assertEquals(0, search(47.146196, -122.435043, 0.03, "sushi").length);
+
+        // Whitespace is matched like any other text, not taken as no search
+        assertEquals(0, search(47.146196, -122.435043, 0.03, "  ").length);
+    }
+
     @Test
     public void getById() throws Exception {
         Poi expectedPoi = repo.findAll().get(0);
@@ -236,6 +254,32 @@ public class PoiTests {
         assertEquals(newLocation, poiFromDb.getLocation());
     }
 
+    // GET /poi/{id} is cached, so it must see the new location immediately
+    @Test
+    public void getByIdAfterPatch() throws Exception {
+        Poi testPoi = repo.save(new Poi("Test POI 1", "Test Address", "tag1, tag2", 1.234, 4.567));
+        String id = testPoi.getId();
+        HttpRequest get = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + "/poi/" + id))
+                .GET()
+                .build();
+        assertEquals(testPoi, mapper.readValue(client.send(get, HttpResponse.BodyHandlers.ofString()).body(), Poi.class));
+
+        GeoJsonPoint newLocation = new GeoJsonPoint(5.0, 6.0);
+        HttpRequest req = HttpRequest.newBuilder()
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(new ObjectMapper().writeValueAsString(newLocation)))
+                .uri(URI.create("http://localhost:" + port + "/poi/" + id + "/location"))
+                .build();
+        assertEquals(200, client.send(req, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        Poi result = mapper.readValue(client.send(get, HttpResponse.BodyHandlers.ofString()).body(), Poi.class);
+        assertEquals(newLocation, result.getLocation());
+
+        repo.deleteById(id);
+        assertEquals(404, client.send(get, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
     @Test
     public void patchPoiLocationNotFound() throws Exception {
         GeoJsonPoint newLocation = new GeoJsonPoint(5.0, 6.0);
@@ -268,4 +312,67 @@ public class PoiTests {
         Optional<Poi> fromDb = repo.findById(id);
         assertTrue(fromDb.isEmpty());
     }
+
+    // Searches are answered from memory, so they must see writes immediately
+    @Test
+    public void searchSeesWrites() throws Exception {
+        Poi newPoi = new Poi("Test POI 1", "Test Address", "tag1, tag2", 1.234, 4.567);
+        HttpRequest req = HttpRequest.newBuilder()
+                .header("Content-Type", "application/json")
+                .uri(URI.create("http://localhost:" + port + "/poi"))
+                .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(newPoi)))
+                .build();
+        HttpResponse<String> response = client.send(req, HttpResponse.BodyHandlers.ofString() );
+        assertEquals(201, response.statusCode());
+        String id = mapper.readValue(response.body(), Poi.class).getId();
+
+        Poi[] result = search(1.234, 4.567, 0.01);
+        assertEquals(1, result.length);
+        assertEquals(id, result[0].getId());
+
+        GeoJsonPoint newLocation = new GeoJsonPoint(5.0, 6.0);
+        req = HttpRequest.newBuilder()
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(new ObjectMapper().writeValueAsString(newLocation)))
+                .uri(URI.create("http://localhost:" + port + "/poi/" + id + "/location"))
+                .build();
+        response = client.send(req, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+
+        assertEquals(0, search(1.234, 4.567, 0.01).length);
+        result = search(6.0, 5.0, 0.01);
+        assertEquals(1, result.length);
+        assertEquals(id, result[0].getId());
+
+        req = HttpRequest.newBuilder()
+                .DELETE()
+                .uri(URI.create("http://localhost:" + port + "/poi/" + id))
+                .build();
+        response = client.send(req, HttpResponse.BodyHandlers.ofString());
+        assertEquals(204, response.statusCode());
+
+        assertEquals(0, search(6.0, 5.0, 0.01).length);
+    }
+
+    @Test
+    public void searchWholeEarth() throws Exception {
+        Poi[] result = search(47.146196, -122.435043, 13000);
+        assertEquals(repo.count(), result.length);
+        assertEquals("Farrelli's Pizza, Parkland", result[0].getName());
+    }
+
+    private Poi[] search( double lat, double longitude, double radius ) throws Exception {
+        return search(lat, longitude, radius, "");
+    }
+
+    private Poi[] search( double lat, double longitude, double radius, String text ) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + "/poi?lat=" + lat + "&long=" + longitude + "&radius=" + radius
+                        + "&search=" + URLEncoder.encode(text, StandardCharsets.UTF_8)))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(req, HttpResponse.BodyHandlers.ofString() );
+        assertEquals(200, response.statusCode());
+        return mapper.readValue(response.body(), Poi[].class);
+    }
 }
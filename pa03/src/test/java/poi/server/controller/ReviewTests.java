@@ -288,4 +288,53 @@ public class ReviewTests {
         List<Review> reviewsFromDb = repo.findAllByPoiId(poi1.getId());
         assertEquals(0, reviewsFromDb.size());
     }
+
+    // The reviews are cached, so every kind of write must be visible to the next read
+    @Test
+    public void listReviewsSeesWrites() throws Exception {
+        assertEquals(2, getReviews(poi1.getId()).length);
+
+        Review review = new Review(3, "E", poi1.getId());
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + "/poi/" + poi1.getId() + "/reviews"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(new ObjectMapper().writeValueAsString(review)) )
+                .build();
+        assertEquals(201, client.send(req, HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(3, getReviews(poi1.getId()).length);
+
+        Review changed = reviews1.get(0);
+        changed.setReview("QQQQ");
+        req = HttpRequest.newBuilder()
+                .header("Content-Type", "application/json")
+                .uri(URI.create("http://localhost:" + port + "/reviews/" + changed.getId()))
+                .PUT(HttpRequest.BodyPublishers.ofString(new ObjectMapper().writeValueAsString(changed)) )
+                .build();
+        assertEquals(200, client.send(req, HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals("QQQQ", getReviews(poi1.getId())[0].getReview());
+
+        req = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + "/reviews/" + changed.getId()))
+                .DELETE()
+                .build();
+        assertEquals(204, client.send(req, HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(2, getReviews(poi1.getId()).length);
+
+        // Writes that bypass the endpoints
+        repo.save(new Review(5, "F", poi1.getId()));
+        assertEquals(3, getReviews(poi1.getId()).length);
+        repo.deleteAllByPoiId(poi1.getId());
+        assertEquals(0, getReviews(poi1.getId()).length);
+        assertEquals(2, getReviews(poi2.getId()).length);
+    }
+
+    private Review[] getReviews( String poiId ) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + "/poi/" + poiId + "/reviews"))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(req, HttpResponse.BodyHandlers.ofString() );
+        assertEquals(200, response.statusCode());
+        return new ObjectMapper().readValue(response.body(), Review[].class);
+    }
 }
@@ -0,0 +1,47 @@
+package fractal.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-frame generation of the default view with the different generator options, using one
+ * thread per available processor and square tiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EngineBenchmark {
+
+    @Param({"false", "true"})
+    public boolean interiorChecking;
+
+    @Param({"false", "true"})
+    public boolean vectorized;
+
+    @Param({"STANDARD", "BOUNDARY_TRACE"})
+    public RenderMode mode;
+
+    private FractalGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = new FractalGenerator(new FractalImage(1024, 768));
+        generator.setInteriorChecking(interiorChecking);
+        generator.setVectorized(vectorized);
+        generator.setRenderMode(mode);
+    }
+
+    @Benchmark
+    public double frame() {
+        return generator.render(Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,50 @@
+package fractal.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-frame generation of the default view at different thread counts, tile partitions and
+ * schedulers.  A thread count of 0 means one thread per available processor.  Interior checking
+ * is on, so that the frame time is dominated by the boundary, where load balance matters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FrameBenchmark {
+
+    @Param({"1", "2", "4", "8", "0"})
+    public int threads;
+
+    @Param({"ROWS", "COLUMNS", "SQUARES", "INTERLEAVED"})
+    public TilePartition partition;
+
+    @Param({"FORK_JOIN", "FIXED_POOL", "VIRTUAL_THREADS", "ATOMIC_COUNTER"})
+    public TileScheduler scheduler;
+
+    private FractalGenerator generator;
+    private int threadCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = new FractalGenerator(new FractalImage(1024, 768));
+        generator.setPartition(partition);
+        generator.setScheduler(scheduler);
+        generator.setInteriorChecking(true);
+        threadCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Benchmark
+    public double frame() {
+        return generator.render(threadCount);
+    }
+}
@@ -0,0 +1,58 @@
+package fractal.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of storing a full frame of iteration counts in a FractalImage and of converting a
+ * frame to colors.  Uploading to the JavaFX image is not measured, because it needs the
+ * toolkit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImageBenchmark {
+
+    private static final int WIDTH = 1024;
+    private static final int HEIGHT = 768;
+
+    private FractalImage image;
+    private int[] iterations;
+    private int[] argb;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = new FractalImage(WIDTH, HEIGHT);
+        iterations = new int[WIDTH * HEIGHT];
+        argb = new int[WIDTH * HEIGHT];
+        Random rand = new Random(390);
+        for( int i = 0; i < iterations.length; i++ ) {
+            iterations[i] = rand.nextInt(100);
+        }
+    }
+
+    @Benchmark
+    public FractalImage writePixels() {
+        for( int y = 0; y < HEIGHT; y++ ) {
+            for( int x = 0; x < WIDTH; x++ ) {
+                image.writePixel(x, y, iterations[y * WIDTH + x]);
+            }
+        }
+        return image;
+    }
+
+    @Benchmark
+    public int[] colorize() {
+        Palette.SUNSET.colorize(iterations, argb, 0, iterations.length);
+        return argb;
+    }
+}
@@ -0,0 +1,79 @@
+package fractal.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-pixel kernels.  Each invocation iterates one full row through the middle of
+ * the default view, which crosses the interior of the set as well as the boundary, and the
+ * score is reported per pixel.  vectorFloat ignores interiorChecking, which the float lanes do
+ * not support.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KernelBenchmark {
+
+    private static final int WIDTH = 1024;
+    private static final int HEIGHT = 768;
+    private static final int ROW = HEIGHT / 2;
+
+    @Param({"false", "true"})
+    public boolean interiorChecking;
+
+    private FractalGenerator generator;
+    private double[] cx;
+    private float[] cxf;
+    private double cy;
+    private int[] out;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = new FractalGenerator(new FractalImage(WIDTH, HEIGHT));
+        generator.setInteriorChecking(interiorChecking);
+
+        // The same coordinates as the scalar benchmark
+        int lanes = Math.max(VectorKernel.laneCount(), VectorKernel.floatLaneCount());
+        cx = new double[(WIDTH + lanes - 1) / lanes * lanes];
+        cxf = new float[cx.length];
+        for( int i = 0; i < cx.length; i++ ) {
+            cx[i] = generator.pixelX(i);
+            cxf[i] = (float) cx[i];
+        }
+        cy = generator.pixelY(ROW);
+        out = new int[WIDTH];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public void scalar(Blackhole bh) {
+        for( int i = 0; i < WIDTH; i++ ) {
+            bh.consume(generator.iterate(i, ROW));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int[] vector() {
+        VectorKernel.iterateRow(cx, cy, WIDTH, FractalGenerator.MAX_ITERATIONS, interiorChecking, out, null);
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int[] vectorFloat() {
+        VectorKernel.iterateRowFloat(cx, cxf, cy, WIDTH, FractalGenerator.MAX_ITERATIONS, out, null);
+        return out;
+    }
+}
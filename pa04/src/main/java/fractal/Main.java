@@ -1,20 +1,45 @@
 package fractal;
 
+import fractal.core.MappedIterationStore;
 import fractal.gui.FractalGui;
+import fractal.gui.StoreViewer;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Starts the GUI.  With the arguments --store FILE, it shows an iteration store written by
+ * the batch renderer instead, in a StoreViewer (which explains why that is not part of
+ * FractalGui).
+ */
 public class Main extends Application {
 
+    // The store viewer, if one is shown
+    private StoreViewer viewer;
+
     @Override
     public void start(Stage primaryStage) throws Exception {
-        Scene scn = new Scene( new FractalGui() );
+        List<String> args = getParameters().getRaw();
+        Scene scn;
+        if( args.size() == 2 && args.get(0).equals("--store") ) {
+            viewer = new StoreViewer(MappedIterationStore.open(Path.of(args.get(1)), false));
+            scn = new Scene(viewer);
+        } else {
+            scn = new Scene( new FractalGui() );
+        }
         primaryStage.setScene(scn);
         primaryStage.show();
     }
 
+    @Override
+    public void stop() throws Exception {
+        if( viewer != null ) viewer.close();
+    }
+
     public static void main(String[] args) {
-        launch();
+        launch(args);
     }
 }
@@ -0,0 +1,159 @@
+package fractal.cli;
+
+import fractal.core.FractalGenerator;
+import fractal.core.MappedIterationStore;
+import fractal.core.Precision;
+import fractal.core.StripBuffer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders a fractal to a PNG file without the GUI.  The image is generated in horizontal
+ * strips of STRIP_ROWS rows.  While one strip is being generated by the worker threads, the
+ * previous strip is colored and written to the file by a separate encoder thread, so only two
+ * strips are ever held in memory regardless of the size of the image.
+ *
+ * With --frames, a zoom sequence is rendered instead (see ZoomSequence), and with --workers
+ * the strips are rendered by worker processes (see RenderCoordinator).  With --store, the
+ * iteration counts are written to a MappedIterationStore instead, in bands of BAND_ROWS rows,
+ * so that images of any size can be rendered.
+ *
+ * Run with: ./gradlew renderBatch --args="--size 4096x3072 --out big.png"
+ */
+public class BatchMain {
+
+    // The number of rows in a strip
+    static final int STRIP_ROWS = 128;
+
+    // The number of rows rendered at once into a store
+    private static final int BAND_ROWS = 256;
+
+    public static void main( String[] args ) {
+        RenderOptions opts;
+        try {
+            opts = RenderOptions.parse(args);
+        } catch( IllegalArgumentException e ) {
+            System.err.println(e.getMessage());
+            System.err.println(RenderOptions.USAGE);
+            System.exit(1);
+            return;
+        }
+
+        try {
+            if( opts.getFrames() > 1 ) {
+                ZoomSequence.render(opts);
+            } else if( !opts.getWorkers().isEmpty() ) {
+                RenderCoordinator.render(opts);
+            } else if( opts.getStore() != null ) {
+                renderToStore(opts);
+            } else {
+                render(opts);
+            }
+        } catch( IOException | ExecutionException e ) {
+            System.err.println("Unable to write: " + (opts.getStore() != null ? opts.getStore() : opts.getOutput()));
+            e.printStackTrace();
+            System.exit(1);
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Render the image described by the options and write it to the output file.
+     * @param opts the options
+     */
+    public static void render( RenderOptions opts ) throws IOException, InterruptedException, ExecutionException {
+        int width = opts.getWidth(), height = opts.getHeight();
+        int rows = Math.min(STRIP_ROWS, height);
+
+        // Two strips: one is generated while the other is written
+        StripBuffer[] strips = { new StripBuffer(width, height, rows), new StripBuffer(width, height, rows) };
+        FractalGenerator[] generators = { new FractalGenerator(strips[0]), new FractalGenerator(strips[1]) };
+        for( FractalGenerator g : generators ) {
+            opts.configure(g);
+        }
+
+        System.out.printf("Rendering %dx%d %s of %s with %d threads (%s) to %s%n",
+                width, height, opts.getViewport(), opts.getKernel(), opts.getThreads(), opts.getScheduler(), opts.getOutput());
+
+        ExecutorService encoder = Executors.newSingleThreadExecutor();
+        long start = System.currentTimeMillis();
+        try( PngWriter png = new PngWriter(new BufferedOutputStream(Files.newOutputStream(opts.getOutput())), width, height) ) {
+            int[] argb = new int[width];
+            Future<?> pending = null;
+            int lastPercent = 0;
+            for( int y = 0, k = 0; y < height; y += rows, k++ ) {
+                StripBuffer strip = strips[k % 2];
+                int count = Math.min(rows, height - y);
+                strip.setFirstRow(y);
+                generators[k % 2].render(opts.getThreads(), y, count);
+
+                // The other strip must be written before this one
+                if( pending != null ) pending.get();
+                int firstRow = y;
+                pending = encoder.submit( () -> {
+                    for( int row = firstRow; row < firstRow + count; row++ ) {
+                        strip.colorizeRow(opts.getPalette(), opts.isSmooth(), row, argb);
+                        png.writeRow(argb, 0);
+                    }
+                    return null;
+                });
+
+                int percent = (int) ((long) (y + count) * 100 / height);
+                if( percent / 10 > lastPercent / 10 ) {
+                    System.out.printf("%3d%%%n", percent);
+                    lastPercent = percent;
+                }
+            }
+            if( pending != null ) pending.get();
+        } finally {
+            encoder.shutdown();
+        }
+        long end = System.currentTimeMillis();
+
+        double time = (end - start) / 1000.0;
+        System.out.printf("Done in %.3f s (%.1f Mpixels/s, %s, %s)%n", time, (double) width * height / time / 1e6,
+                opts.getScheduler(), generators[0].getPrecision());
+    }
+
+    /**
+     * Render the image described by the options into a new iteration store.  The workers write
+     * their tiles directly into the mapped file.
+     * @param opts the options
+     */
+    public static void renderToStore( RenderOptions opts ) throws IOException {
+        int width = opts.getWidth(), height = opts.getHeight();
+        System.out.printf("Rendering %dx%d %s of %s with %d threads (%s) to store %s%n",
+                width, height, opts.getViewport(), opts.getKernel(), opts.getThreads(), opts.getScheduler(), opts.getStore());
+
+        long start = System.currentTimeMillis();
+        Precision precision;
+        try( MappedIterationStore store = MappedIterationStore.create(opts.getStore(), width, height) ) {
+            FractalGenerator generator = new FractalGenerator(store);
+            opts.configure(generator);
+            int lastPercent = 0;
+            for( int y = 0; y < height; y += BAND_ROWS ) {
+                int count = Math.min(BAND_ROWS, height - y);
+                generator.render(opts.getThreads(), y, count);
+
+                int percent = (int) ((long) (y + count) * 100 / height);
+                if( percent > lastPercent ) {
+                    System.out.printf("%3d%%%n", percent);
+                    lastPercent = percent;
+                }
+            }
+            precision = generator.getPrecision();
+        }
+        long end = System.currentTimeMillis();
+
+        double time = (end - start) / 1000.0;
+        System.out.printf("Done in %.3f s (%.1f Mpixels/s, %s, %s)%n", time, (double) width * height / time / 1e6,
+                opts.getScheduler(), precision);
+    }
+}
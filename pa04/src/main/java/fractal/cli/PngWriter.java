@@ -0,0 +1,146 @@
+package fractal.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a PNG file one row at a time, so that the whole image never has to be held in
+ * memory.  Rows are written as 8-bit RGB (the alpha channel of the input is ignored) with
+ * the Sub filter, and the compressed data is split into IDAT chunks as it is produced.
+ */
+public class PngWriter implements Closeable {
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+    // The maximum size of the data in one IDAT chunk
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private static final int BYTES_PER_PIXEL = 3;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final Deflater deflater;
+    private final DeflaterOutputStream idat;
+
+    // One filtered row: the filter type byte followed by the pixel bytes
+    private final byte[] row;
+    private int rowsWritten;
+
+    public PngWriter( OutputStream out, int width, int height ) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.row = new byte[1 + width * BYTES_PER_PIXEL];
+
+        this.out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream h = new DataOutputStream(header);
+        h.writeInt(width);
+        h.writeInt(height);
+        h.writeByte(8);   // Bit depth
+        h.writeByte(2);   // Color type: RGB
+        h.writeByte(0);   // Compression: deflate
+        h.writeByte(0);   // Filter method: adaptive
+        h.writeByte(0);   // No interlace
+        writeChunk("IHDR", header.toByteArray(), header.size());
+
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        idat = new DeflaterOutputStream(new ChunkOutputStream(), deflater, CHUNK_SIZE);
+    }
+
+    /**
+     * Write the next row of the image.
+     * @param argb the colors of the row
+     * @param offset index in argb of the first pixel of the row
+     */
+    public void writeRow( int[] argb, int offset ) throws IOException {
+        if( rowsWritten == height ) {
+            throw new IllegalStateException("All " + height + " rows have been written");
+        }
+        row[0] = 1;  // Filter type: Sub
+        int prevR = 0, prevG = 0, prevB = 0;
+        for( int x = 0, i = 1; x < width; x++, i += BYTES_PER_PIXEL ) {
+            int c = argb[offset + x];
+            int r = (c >> 16) & 0xff, g = (c >> 8) & 0xff, b = c & 0xff;
+            row[i] = (byte) (r - prevR);
+            row[i + 1] = (byte) (g - prevG);
+            row[i + 2] = (byte) (b - prevB);
+            prevR = r;
+            prevG = g;
+            prevB = b;
+        }
+        idat.write(row);
+        rowsWritten++;
+    }
+
+    /**
+     * Finish the image data and write the end of the file.  All rows must have been written.
+     * The underlying stream is closed, even if the image is incomplete.
+     */
+    @Override
+    public void close() throws IOException {
+        try( out ) {
+            if( rowsWritten != height ) {
+                throw new IllegalStateException("Only " + rowsWritten + " of " + height + " rows were written");
+            }
+            idat.finish();
+            idat.flush();
+            writeChunk("IEND", new byte[0], 0);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeChunk( String type, byte[] data, int length ) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Collects compressed data and writes it as IDAT chunks.
+     */
+    private class ChunkOutputStream extends OutputStream {
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int count;
+
+        @Override
+        public void write( int b ) throws IOException {
+            if( count == buffer.length ) flush();
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException {
+            while( len > 0 ) {
+                if( count == buffer.length ) flush();
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if( count > 0 ) {
+                writeChunk("IDAT", buffer, count);
+                count = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package fractal.cli;
+
+import fractal.core.StripBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Renders an image on TileWorker processes.  The image is divided into the same strips as
+ * BatchMain uses, and each worker is sent the same command line arguments, so the result is
+ * identical to a render by BatchMain with those arguments (given the same --threads, which
+ * decides the tiles within a strip, and with it the result of boundary tracing).
+ *
+ * One thread per worker takes strips from a queue, sends them to its worker and stores the
+ * returned blocks, and the calling thread colors and writes the strips in order.  The workers
+ * may run ahead of the writer by at most WINDOW_PER_WORKER strips each, which bounds the memory
+ * used.  When a worker is lost (the connection fails or it does not answer within
+ * READ_TIMEOUT_MILLIS), its strip goes back into the queue and is rendered by another worker.
+ * The render only fails if every worker is lost.
+ */
+public class RenderCoordinator {
+
+    // How far (in strips per worker) the workers may run ahead of the writer
+    private static final int WINDOW_PER_WORKER = 4;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+
+    // A worker that takes longer than this for a strip is considered lost
+    private static final int READ_TIMEOUT_MILLIS = 600_000;
+
+    // The strips that still have to be rendered, lowest first
+    private final PriorityQueue<Integer> pending = new PriorityQueue<>();
+
+    // The rendered strips that have not been written yet
+    private final StripBuffer[] done;
+
+    // The number of strips written, and the number of connections still open
+    private int written;
+    private int connections;
+
+    private final RenderOptions opts;
+    private final int rows;
+
+    private RenderCoordinator( RenderOptions opts ) {
+        this.opts = opts;
+        this.rows = Math.min(BatchMain.STRIP_ROWS, opts.getHeight());
+        this.done = new StripBuffer[(opts.getHeight() + rows - 1) / rows];
+        for( int k = 0; k < done.length; k++ ) {
+            pending.add(k);
+        }
+    }
+
+    /**
+     * Render the image described by the options on the workers given by the options, and
+     * write it to the output file.
+     * @param opts the options
+     * @throws IOException if the file cannot be written, or every worker was lost
+     */
+    public static void render( RenderOptions opts ) throws IOException, InterruptedException {
+        new RenderCoordinator(opts).run();
+    }
+
+    private void run() throws IOException, InterruptedException {
+        int width = opts.getWidth(), height = opts.getHeight();
+        System.out.printf("Rendering %dx%d %s of %s on %d workers to %s%n",
+                width, height, opts.getViewport(), opts.getKernel(), opts.getWorkers().size(), opts.getOutput());
+
+        List<Thread> threads = new ArrayList<>();
+        synchronized( this ) {
+            connections = opts.getWorkers().size();
+        }
+        for( String address : opts.getWorkers() ) {
+            Thread thread = new Thread( () -> serve(address), "coordinator-" + address );
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+
+        long start = System.currentTimeMillis();
+        try( PngWriter png = new PngWriter(new BufferedOutputStream(Files.newOutputStream(opts.getOutput())), width, height) ) {
+            int[] argb = new int[width];
+            for( int k = 0; k < done.length; k++ ) {
+                StripBuffer strip = next(k);
+                for( int row = strip.getFirstRow(); row < strip.getFirstRow() + strip.getRows() && row < height; row++ ) {
+                    strip.colorizeRow(opts.getPalette(), opts.isSmooth(), row, argb);
+                    png.writeRow(argb, 0);
+                }
+                written(k);
+            }
+        }
+        for( Thread thread : threads ) {
+            thread.join();
+        }
+        long end = System.currentTimeMillis();
+
+        double time = (end - start) / 1000.0;
+        System.out.printf("Done in %.3f s (%.1f Mpixels/s)%n", time, (double) width * height / time / 1e6);
+    }
+
+    /**
+     * Send strips to one worker until every strip is rendered or the worker is lost.
+     */
+    private void serve( String address ) {
+        int strip = -1;
+        try( Socket socket = connect(address) ) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            TileProtocol.writeJob(out, rows, opts.getJobArgs());
+
+            while( (strip = take()) >= 0 ) {
+                int firstRow = strip * rows;
+                int count = Math.min(rows, opts.getHeight() - firstRow);
+                out.writeInt(firstRow);
+                out.writeInt(count);
+                out.flush();
+
+                StripBuffer buffer = new StripBuffer(opts.getWidth(), opts.getHeight(), rows);
+                buffer.setFirstRow(firstRow);
+                TileProtocol.readBlock(in, buffer, firstRow, count);
+                complete(strip, buffer);
+                strip = -1;
+            }
+            out.writeInt(TileProtocol.END);
+            out.flush();
+        } catch( IOException | RuntimeException e ) {
+            // A RuntimeException means a bug or a worker that does not follow the protocol;
+            // either way the strip must go back to the queue, or next() would wait forever
+            System.err.println("Lost worker " + address + ": " + e);
+            if( strip >= 0 ) resubmit(strip);
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        } finally {
+            disconnected();
+        }
+    }
+
+    private static Socket connect( String address ) throws IOException {
+        int colon = address.lastIndexOf(':');
+        String host = colon < 0 ? address : address.substring(0, colon);
+        int port = colon < 0 ? TileWorker.DEFAULT_PORT : Integer.parseInt(address.substring(colon + 1));
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+        } catch( IOException e ) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+
+    /**
+     * Wait for a strip to render, within the window ahead of the writer.
+     * @return the strip, or -1 if every strip has been rendered
+     */
+    private synchronized int take() throws InterruptedException {
+        int window = WINDOW_PER_WORKER * opts.getWorkers().size();
+        while( true ) {
+            Integer next = pending.peek();
+            if( next != null && next < written + window ) return pending.poll();
+            if( next == null && allRendered() ) return -1;
+            wait();
+        }
+    }
+
+    private boolean allRendered() {
+        for( int k = written; k < done.length; k++ ) {
+            if( done[k] == null ) return false;
+        }
+        return true;
+    }
+
+    private synchronized void complete( int strip, StripBuffer buffer ) {
+        done[strip] = buffer;
+        notifyAll();
+    }
+
+    private synchronized void resubmit( int strip ) {
+        pending.add(strip);
+        notifyAll();
+    }
+
+    private synchronized void disconnected() {
+        connections--;
+        notifyAll();
+    }
+
+    /**
+     * Wait until a strip has been rendered.
+     * @throws IOException if every worker has been lost first
+     */
+    private synchronized StripBuffer next( int strip ) throws IOException, InterruptedException {
+        while( done[strip] == null ) {
+            if( connections == 0 ) throw new IOException("Every worker was lost");
+            wait();
+        }
+        return done[strip];
+    }
+
+    private synchronized void written( int strip ) {
+        done[strip] = null;
+        written = strip + 1;
+        notifyAll();
+    }
+}
@@ -0,0 +1,263 @@
+package fractal.cli;
+
+import fractal.core.BurningShipKernel;
+import fractal.core.FractalGenerator;
+import fractal.core.FractalKernel;
+import fractal.core.JuliaKernel;
+import fractal.core.MandelbrotKernel;
+import fractal.core.MultibrotKernel;
+import fractal.core.Palette;
+import fractal.core.RenderMode;
+import fractal.core.TilePartition;
+import fractal.core.TileScheduler;
+import fractal.core.Viewport;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command line options for the headless renderer.
+ */
+public class RenderOptions {
+
+    public static final String USAGE = String.join(System.lineSeparator(),
+            "Options:",
+            "  --size WxH            image size in pixels (default 1024x768)",
+            "  --kernel K            mandelbrot, julia:X,Y, burningship or multibrot:N (default mandelbrot)",
+            "  --center X,Y          center of the view in the complex plane, any number of digits (default: the whole fractal)",
+            "  --scale S             height of the view in the complex plane (default: the whole fractal)",
+            "  --iterations N        maximum number of iterations (default " + FractalGenerator.MAX_ITERATIONS + ")",
+            "  --threads N           number of worker threads (default: number of processors)",
+            "  --partition P         rows, columns, squares or interleaved (default squares)",
+            "  --scheduler S         fork_join, fixed_pool, virtual_threads or atomic_counter",
+            "                        (default fork_join)",
+            "  --mode M              standard or boundary_trace (default standard)",
+            "  --palette NAME        sunset, ocean or grayscale (default sunset)",
+            "  --interior            enable interior checking",
+            "  --simd                use the vector kernel (in float lanes for shallow views without --interior)",
+            "  --aa                  anti-alias edge pixels",
+            "  --bands               color whole iteration counts instead of smooth coloring",
+            "  --perturbation        use perturbation even when not zoomed in deeply",
+            "  --double              never use float lanes in the vector kernel",
+            "  --frames N            render a zoom sequence of N frames (default 1)",
+            "  --zoom F              scale factor from one frame to the next (default 0.9)",
+            "  --encoders N          number of threads encoding frames of a sequence (default 2)",
+            "  --workers H:P,...     render on worker processes (see TileWorker); --threads applies to each worker",
+            "  --store FILE          write the iteration counts to a memory-mapped store instead of a PNG file,",
+            "                        for images too large for memory (view with: ./gradlew run --args=\"--store FILE\")",
+            "  --out FILE            output PNG file (default fractal.png).  For a sequence, the frame number is",
+            "                        inserted before the extension, or FILE is a pattern such as zoom%04d.png");
+
+    int width = 1024;
+    int height = 768;
+    FractalKernel kernel = new MandelbrotKernel();
+    BigDecimal centerX, centerY;   // null: the center of the kernel's default view
+    double scale;                  // 0: the scale of the kernel's default view
+    int maxIterations = FractalGenerator.MAX_ITERATIONS;
+    int threads = Runtime.getRuntime().availableProcessors();
+    TilePartition partition = TilePartition.SQUARES;
+    TileScheduler scheduler = TileScheduler.FORK_JOIN;
+    RenderMode mode = RenderMode.STANDARD;
+    Palette palette = Palette.SUNSET;
+    boolean interiorChecking = false;
+    boolean vectorized = false;
+    boolean antialiasing = false;
+    boolean smooth = true;
+    boolean forcePerturbation = false;
+    boolean reducedPrecision = true;
+    int frames = 1;
+    double zoom = 0.9;
+    int encoders = 2;
+    Path output = Path.of("fractal.png");
+    List<String> workers = List.of();
+    Path store;
+
+    // The arguments without --workers, which are passed on to the workers
+    private String[] jobArgs;
+
+    /**
+     * Parse the command line.
+     * @param args the arguments
+     * @return the options
+     * @throws IllegalArgumentException if an argument is not valid
+     */
+    public static RenderOptions parse( String[] args ) {
+        RenderOptions opts = new RenderOptions();
+        for( int i = 0; i < args.length; i++ ) {
+            String arg = args[i];
+            switch( arg ) {
+                case "--interior": opts.interiorChecking = true; continue;
+                case "--simd": opts.vectorized = true; continue;
+                case "--aa": opts.antialiasing = true; continue;
+                case "--bands": opts.smooth = false; continue;
+                case "--perturbation": opts.forcePerturbation = true; continue;
+                case "--double": opts.reducedPrecision = false; continue;
+                default: break;
+            }
+            if( i + 1 == args.length ) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            try {
+                switch( arg ) {
+                    case "--size":
+                        String[] size = value.toLowerCase(Locale.ROOT).split("x");
+                        opts.width = Integer.parseInt(size[0]);
+                        opts.height = Integer.parseInt(size[1]);
+                        break;
+                    case "--center":
+                        String[] center = value.split(",");
+                        opts.centerX = new BigDecimal(center[0].trim());
+                        opts.centerY = new BigDecimal(center[1].trim());
+                        break;
+                    case "--kernel": opts.kernel = parseKernel(value); break;
+                    case "--scale":
+                        opts.scale = Double.parseDouble(value);
+                        if( !(opts.scale > 0) || Double.isInfinite(opts.scale) ) {
+                            throw new IllegalArgumentException("Scale must be positive: " + value);
+                        }
+                        break;
+                    case "--iterations": opts.maxIterations = Integer.parseInt(value); break;
+                    case "--threads": opts.threads = Integer.parseInt(value); break;
+                    case "--partition": opts.partition = TilePartition.valueOf(value.toUpperCase(Locale.ROOT)); break;
+                    case "--scheduler": opts.scheduler = TileScheduler.valueOf(value.toUpperCase(Locale.ROOT)); break;
+                    case "--mode": opts.mode = RenderMode.valueOf(value.toUpperCase(Locale.ROOT)); break;
+                    case "--palette": opts.palette = findPalette(value); break;
+                    case "--frames": opts.frames = Integer.parseInt(value); break;
+                    case "--zoom": opts.zoom = Double.parseDouble(value); break;
+                    case "--encoders": opts.encoders = Integer.parseInt(value); break;
+                    case "--out": opts.output = Path.of(value); break;
+                    case "--store": opts.store = Path.of(value); break;
+                    case "--workers": opts.workers = List.of(value.split(",")); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            } catch( NumberFormatException | ArrayIndexOutOfBoundsException e ) {
+                throw new IllegalArgumentException("Invalid value for " + arg + ": " + value);
+            }
+        }
+        if( opts.width <= 0 || opts.height <= 0 || opts.maxIterations <= 0 || opts.threads <= 0 ) {
+            throw new IllegalArgumentException("Size, iterations and threads must be positive");
+        }
+        if( opts.frames <= 0 || !(opts.zoom > 0) || opts.encoders <= 0 ) {
+            throw new IllegalArgumentException("Frames, zoom and encoders must be positive");
+        }
+        if( opts.frames > 1 && !opts.workers.isEmpty() ) {
+            throw new IllegalArgumentException("A sequence cannot be rendered on workers");
+        }
+        if( opts.store != null && (opts.frames > 1 || !opts.workers.isEmpty()) ) {
+            throw new IllegalArgumentException("A store can only be written by a single render");
+        }
+        opts.jobArgs = withoutOption(args, "--workers");
+        if( opts.frames > 1 ) {
+            // Check the output pattern (IllegalFormatException is an IllegalArgumentException)
+            opts.getFrameOutput(0);
+        }
+        return opts;
+    }
+
+    private static String[] withoutOption( String[] args, String option ) {
+        List<String> result = new ArrayList<>();
+        for( int i = 0; i < args.length; i++ ) {
+            if( args[i].equals(option) ) {
+                i++;   // Skip the value
+            } else {
+                result.add(args[i]);
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    private static FractalKernel parseKernel( String value ) {
+        String[] parts = value.split(":", 2);
+        String name = parts[0].toLowerCase(Locale.ROOT);
+        if( name.equals("mandelbrot") && parts.length == 1 ) return new MandelbrotKernel();
+        if( name.equals("burningship") && parts.length == 1 ) return new BurningShipKernel();
+        if( name.equals("julia") && parts.length == 2 ) {
+            String[] k = parts[1].split(",");
+            return new JuliaKernel(Double.parseDouble(k[0].trim()), Double.parseDouble(k[1].trim()));
+        }
+        if( name.equals("multibrot") && parts.length == 2 ) {
+            return new MultibrotKernel(Integer.parseInt(parts[1].trim()));
+        }
+        throw new IllegalArgumentException("Unknown kernel: " + value);
+    }
+
+    private static Palette findPalette( String name ) {
+        for( Palette p : Palette.all() ) {
+            if( p.getName().equalsIgnoreCase(name) ) return p;
+        }
+        throw new IllegalArgumentException("Unknown palette: " + name);
+    }
+
+    /**
+     * @return the viewport given by the center and scale options, where the kernel's default
+     *         view fills in those that are not given
+     */
+    public Viewport getViewport() {
+        Viewport view = kernel.getDefaultViewport();
+        return new Viewport(centerX != null ? centerX : view.getExactCenterX(),
+                centerY != null ? centerY : view.getExactCenterY(),
+                scale > 0 ? scale : view.getScale());
+    }
+
+    /**
+     * Apply the generation options to a generator.
+     * @param generator the generator
+     */
+    public void configure( FractalGenerator generator ) {
+        generator.setKernel(kernel);
+        generator.setViewport(getViewport());
+        generator.setMaxIterations(maxIterations);
+        generator.setPartition(partition);
+        generator.setScheduler(scheduler);
+        generator.setRenderMode(mode);
+        generator.setInteriorChecking(interiorChecking);
+        generator.setVectorized(vectorized);
+        generator.setAntialiasing(antialiasing);
+        generator.setForcePerturbation(forcePerturbation);
+        generator.setReducedPrecision(reducedPrecision);
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getThreads() { return threads; }
+    public TileScheduler getScheduler() { return scheduler; }
+    public FractalKernel getKernel() { return kernel; }
+    public Palette getPalette() { return palette; }
+    public boolean isSmooth() { return smooth; }
+    public Path getOutput() { return output; }
+    public int getFrames() { return frames; }
+    public double getZoom() { return zoom; }
+    public int getEncoders() { return encoders; }
+    public List<String> getWorkers() { return workers; }
+
+    /**
+     * @return the file of the iteration store to render into, or null to write a PNG file
+     */
+    public Path getStore() { return store; }
+
+    /**
+     * @return the arguments these options were parsed from, without --workers
+     */
+    public String[] getJobArgs() { return jobArgs.clone(); }
+
+    /**
+     * @return the output file of a frame of a sequence: the output file with the frame number
+     *         inserted before the extension, or formatted with the frame number if the file name
+     *         contains a % pattern
+     */
+    public Path getFrameOutput( int frame ) {
+        String name = output.getFileName().toString();
+        if( name.contains("%") ) {
+            name = String.format(name, frame);
+        } else {
+            int dot = name.lastIndexOf('.');
+            if( dot < 0 ) dot = name.length();
+            name = String.format("%s%04d%s", name.substring(0, dot), frame, name.substring(dot));
+        }
+        return output.resolveSibling(name);
+    }
+}
@@ -0,0 +1,140 @@
+package fractal.cli;
+
+import fractal.core.StripBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The socket protocol between RenderCoordinator and TileWorker.  All values are written with
+ * DataOutputStream.
+ *
+ * After connecting, the coordinator sends the job: MAGIC, VERSION, the number of rows in a
+ * strip, and the command line arguments of the render (which the worker parses with
+ * RenderOptions, so that it configures its generator exactly like the coordinator would).
+ * Then it sends requests, one at a time: the first row and the number of rows of a strip.  The
+ * worker answers each request with a block (see writeBlock).  A first row of -1 ends the job.
+ */
+final class TileProtocol {
+
+    static final int MAGIC = 0x46524354;   // "FRCT"
+    static final int VERSION = 1;
+
+    // The request that ends a job
+    static final int END = -1;
+
+    // The most arguments a job may have
+    private static final int MAX_ARGS = 1000;
+
+    private TileProtocol() { }
+
+    static void writeJob( DataOutputStream out, int stripRows, String[] args ) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(stripRows);
+        out.writeInt(args.length);
+        for( String arg : args ) {
+            out.writeUTF(arg);
+        }
+        out.flush();
+    }
+
+    /**
+     * Read a job.
+     * @return the arguments of the render; the number of rows in a strip is stored in
+     *         stripRows[0]
+     */
+    static String[] readJob( DataInputStream in, int[] stripRows ) throws IOException {
+        if( in.readInt() != MAGIC ) throw new IOException("Not a render job");
+        int version = in.readInt();
+        if( version != VERSION ) throw new IOException("Unsupported protocol version " + version);
+        stripRows[0] = in.readInt();
+        int count = in.readInt();
+        if( count < 0 || count > MAX_ARGS ) throw new IOException("Invalid number of arguments: " + count);
+        String[] args = new String[count];
+        for( int i = 0; i < args.length; i++ ) {
+            args[i] = in.readUTF();
+        }
+        return args;
+    }
+
+    /**
+     * Write the rows [firstRow, firstRow + rows) of a strip as a block: the length of the
+     * compressed data, followed by the deflated iteration counts, fractional parts and
+     * anti-aliasing samples.  Counts of neighboring pixels are mostly equal or close, so they
+     * compress to a small fraction of their size.
+     */
+    static void writeBlock( DataOutputStream out, StripBuffer strip, int firstRow, int rows ) throws IOException {
+        int width = strip.getWidth();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try( DataOutputStream d = new DataOutputStream(new DeflaterOutputStream(bytes)) ) {
+            for( int y = firstRow; y < firstRow + rows; y++ ) {
+                for( int x = 0; x < width; x++ ) {
+                    d.writeInt(strip.getIterations(x, y));
+                }
+            }
+            for( int y = firstRow; y < firstRow + rows; y++ ) {
+                for( int x = 0; x < width; x++ ) {
+                    d.writeFloat(strip.getFraction(x, y));
+                }
+            }
+
+            // The pixels with samples, each as its index in the block, the number of samples
+            // and the samples, ended by -1
+            for( int y = firstRow; y < firstRow + rows; y++ ) {
+                for( int x = 0; x < width; x++ ) {
+                    float[] samples = strip.getSamples(x, y);
+                    if( samples == null ) continue;
+                    d.writeInt((y - firstRow) * width + x);
+                    d.writeByte(samples.length);
+                    for( float sample : samples ) {
+                        d.writeFloat(sample);
+                    }
+                }
+            }
+            d.writeInt(-1);
+        }
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Read a block written by writeBlock into the rows [firstRow, firstRow + rows) of a strip.
+     * @throws IOException if the block cannot be read or does not fit the rows
+     */
+    static void readBlock( DataInputStream in, StripBuffer strip, int firstRow, int rows ) throws IOException {
+        int width = strip.getWidth();
+        int length = in.readInt();
+
+        // The block cannot be longer than its uncompressed contents plus the deflate overhead
+        long maxLength = (long) width * rows * (4 + 4 + 4 + 1 + 4 * 255) + 1024;
+        if( length < 0 || length > Math.min(maxLength, Integer.MAX_VALUE - 8) ) {
+            throw new IOException("Invalid block length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        try( DataInputStream d = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes))) ) {
+            int[] iterations = new int[width * rows];
+            for( int i = 0; i < iterations.length; i++ ) {
+                iterations[i] = d.readInt();
+            }
+            for( int i = 0; i < iterations.length; i++ ) {
+                strip.writePixel(i % width, firstRow + i / width, iterations[i], d.readFloat());
+            }
+            for( int i = d.readInt(); i >= 0; i = d.readInt() ) {
+                if( i >= iterations.length ) throw new IOException("Invalid pixel in block: " + i);
+                float[] samples = new float[d.readUnsignedByte()];
+                for( int k = 0; k < samples.length; k++ ) {
+                    samples[k] = d.readFloat();
+                }
+                strip.writeSamples(i % width, firstRow + i / width, samples);
+            }
+        }
+    }
+}
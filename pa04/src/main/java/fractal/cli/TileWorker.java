@@ -0,0 +1,86 @@
+package fractal.cli;
+
+import fractal.core.FractalGenerator;
+import fractal.core.StripBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * A worker process for distributed rendering.  It listens on a port for RenderCoordinator
+ * connections, and renders the strips that the coordinator asks for with its own worker
+ * threads (see TileProtocol).  Each connection is served by its own thread, so several
+ * coordinators can share a worker.
+ *
+ * Run with: ./gradlew renderWorker --args="--port 7890"
+ */
+public class TileWorker {
+
+    public static final int DEFAULT_PORT = 7890;
+
+    // The largest strip a job may ask for, in pixels (a strip takes about 16 bytes per pixel)
+    private static final long MAX_STRIP_PIXELS = 1L << 24;
+
+    public static void main( String[] args ) throws IOException {
+        int port = DEFAULT_PORT;
+        if( args.length == 2 && args[0].equals("--port") ) {
+            port = Integer.parseInt(args[1]);
+        } else if( args.length != 0 ) {
+            System.err.println("Options: --port N   port to listen on (default " + DEFAULT_PORT + ")");
+            System.exit(1);
+            return;
+        }
+
+        try( ServerSocket server = new ServerSocket(port) ) {
+            System.out.printf("Worker listening on port %d%n", server.getLocalPort());
+            while( true ) {
+                Socket socket = server.accept();
+                Thread thread = new Thread( () -> serve(socket), "worker-" + socket.getRemoteSocketAddress() );
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Run one job: read it, then render strips until the coordinator ends the job or closes
+     * the connection.
+     */
+    private static void serve( Socket socket ) {
+        try( socket ) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            int[] stripRows = new int[1];
+            RenderOptions opts = RenderOptions.parse(TileProtocol.readJob(in, stripRows));
+            if( stripRows[0] <= 0 || (long) opts.getWidth() * stripRows[0] > MAX_STRIP_PIXELS ) {
+                throw new IOException("Invalid strip size: " + opts.getWidth() + "x" + stripRows[0]);
+            }
+            StripBuffer strip = new StripBuffer(opts.getWidth(), opts.getHeight(), stripRows[0]);
+            FractalGenerator generator = new FractalGenerator(strip);
+            opts.configure(generator);
+
+            while( true ) {
+                int firstRow = in.readInt();
+                if( firstRow == TileProtocol.END ) break;
+                int rows = in.readInt();
+                if( firstRow < 0 || rows <= 0 || rows > stripRows[0] || firstRow + rows > opts.getHeight() ) {
+                    throw new IOException("Invalid strip: rows " + firstRow + " to " + (firstRow + rows));
+                }
+                strip.setFirstRow(firstRow);
+                generator.render(opts.getThreads(), firstRow, rows);
+                TileProtocol.writeBlock(out, strip, firstRow, rows);
+            }
+        } catch( EOFException e ) {
+            // The coordinator went away
+        } catch( IOException | IllegalArgumentException e ) {
+            System.err.println("Job from " + socket.getRemoteSocketAddress() + " failed: " + e.getMessage());
+        }
+    }
+}
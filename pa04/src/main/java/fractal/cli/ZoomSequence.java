@@ -0,0 +1,135 @@
+package fractal.cli;
+
+import fractal.core.FractalGenerator;
+import fractal.core.Precision;
+import fractal.core.StripBuffer;
+import fractal.core.Viewport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders a zoom animation without the GUI: a sequence of frames about the same center, whose
+ * scale shrinks by a constant factor from one frame to the next, each written to its own PNG
+ * file.  The frames pass through three stages that run at the same time:
+ *
+ *  - the generator computes a frame with the worker threads (the calling thread waits),
+ *  - the encoder threads color and compress earlier frames into memory, and
+ *  - a writer thread writes the compressed files.
+ *
+ * Compressing a PNG runs on a single thread, so without the pipeline the workers would sit
+ * idle while each frame is compressed.  Every frame has its own buffer until it is
+ * encoded; there are encoders + 2 buffers, so the generator only waits when all encoders are
+ * behind.
+ *
+ * Each frame is generated with the previous frame as a hint (see
+ * FractalGenerator.setPreviousFrame): the tiles where the set was are boundary traced, so
+ * regions that are still inside are filled from their borders instead of being iterated.
+ */
+public class ZoomSequence {
+
+    private ZoomSequence() { }
+
+    /**
+     * Render the sequence described by the options and write the frames to the output files.
+     * @param opts the options
+     */
+    public static void render( RenderOptions opts ) throws IOException, InterruptedException, ExecutionException {
+        int width = opts.getWidth(), height = opts.getHeight();
+        int frames = opts.getFrames();
+
+        // One buffer for the frame being generated, one for the previous frame, which the
+        // generator reads, and one for each frame being encoded
+        StripBuffer[] buffers = new StripBuffer[opts.getEncoders() + 2];
+        FractalGenerator[] generators = new FractalGenerator[buffers.length];
+        for( int k = 0; k < buffers.length; k++ ) {
+            buffers[k] = new StripBuffer(width, height, height);
+            generators[k] = new FractalGenerator(buffers[k]);
+            opts.configure(generators[k]);
+        }
+
+        Viewport first = opts.getViewport();
+        System.out.printf("Rendering %d frames of %dx%d from %s of %s, zoom %s per frame, with %d threads and %d encoders to %s%n",
+                frames, width, height, first, opts.getKernel(), opts.getZoom(), opts.getThreads(),
+                opts.getEncoders(), opts.getFrameOutput(0));
+
+        ExecutorService encoders = Executors.newFixedThreadPool(opts.getEncoders());
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        List<Future<Future<?>>> encoded = new ArrayList<>(frames);
+        long start = System.currentTimeMillis();
+        try {
+            Viewport previous = null;
+            double computeTime = 0;
+            long reused = 0;
+            Map<Precision, Integer> precisions = new EnumMap<>(Precision.class);
+            for( int n = 0; n < frames; n++ ) {
+                int k = n % buffers.length;
+
+                // The buffer must have been encoded before it is overwritten
+                if( n >= buffers.length ) encoded.get(n - buffers.length).get();
+
+                Viewport viewport = first.withScale(first.getScale() * Math.pow(opts.getZoom(), n));
+                FractalGenerator generator = generators[k];
+                generator.setViewport(viewport);
+                generator.setPreviousFrame(n > 0 ? buffers[(n - 1) % buffers.length] : null, previous);
+                computeTime += generator.render(opts.getThreads());
+                reused += generator.getPixelsFromPreviousFrame();
+                precisions.merge(generator.getPrecision(), 1, Integer::sum);
+                previous = viewport;
+
+                StripBuffer buffer = buffers[k];
+                int frame = n;
+                encoded.add(encoders.submit( () -> {
+                    byte[] png = encode(buffer, opts);
+                    return writer.submit( () -> {
+                        Files.write(opts.getFrameOutput(frame), png);
+                        return null;
+                    });
+                }));
+
+                if( (n + 1) % 10 == 0 || n + 1 == frames ) {
+                    System.out.printf("%d/%d frames (%s)%n", n + 1, frames, generator.getPrecision());
+                }
+            }
+
+            // Wait for the encoders, then for the writer
+            for( Future<Future<?>> f : encoded ) {
+                f.get().get();
+            }
+
+            long end = System.currentTimeMillis();
+            double time = (end - start) / 1000.0;
+            System.out.printf("Done in %.3f s (%.2f frames/s), generating took %.3f s, %.1f%% of the pixels were filled by tracing%n",
+                    time, frames / time, computeTime, 100.0 * reused / ((double) width * height * frames));
+            System.out.println("Frames by precision: " + precisions);
+        } finally {
+            encoders.shutdown();
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * Color a frame and compress it to PNG in memory.
+     */
+    private static byte[] encode( StripBuffer buffer, RenderOptions opts ) throws IOException {
+        int width = buffer.getWidth(), height = buffer.getHeight();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int[] argb = new int[width];
+        try( PngWriter png = new PngWriter(bytes, width, height) ) {
+            for( int row = 0; row < height; row++ ) {
+                buffer.colorizeRow(opts.getPalette(), opts.isSmooth(), row, argb);
+                png.writeRow(argb, 0);
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
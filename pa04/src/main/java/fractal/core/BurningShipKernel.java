@@ -0,0 +1,63 @@
+package fractal.core;
+
+/**
+ * The Burning Ship fractal: z(0) = 0, z(n+1) = (|Re z(n)| + i |Im z(n)|)^2 + c.  With the
+ * imaginary axis pointing up, as in this generator, the ship is upside down.
+ *
+ * The absolute values make the map non-analytic, so the escaping points need not form a
+ * connected region and boundary tracing is not used.  All instances are equal.
+ */
+public final class BurningShipKernel implements FractalKernel {
+
+    private static final Viewport DEFAULT_VIEWPORT = new Viewport(-0.4, -0.5, 3.0);
+
+    private static final double LN2 = Math.log(2.0);
+
+    @Override
+    public int iterate( double cx, double cy, int maxIterations, float[] fraction ) {
+        double zx = 0.0, zy = 0.0;
+        double zlen2 = 0.0;
+        int iterations = 0;
+        while(iterations < maxIterations && zlen2 <= 4.0 ) {
+            double zxNext = zx * zx - zy * zy + cx;
+            double zyNext = 2.0 * Math.abs(zx * zy) + cy;
+            zx = zxNext;
+            zy = zyNext;
+            zlen2 = zx * zx + zy * zy;
+            iterations++;
+        }
+        if( zlen2 <= 4.0 ) return FractalGenerator.escaped(0, 0.0, fraction);
+
+        // Continue the orbit for the smooth count (see FractalGenerator.smoothFraction)
+        if( fraction != null ) {
+            int extra = 0;
+            while( zlen2 <= FractalGenerator.SMOOTH_RADIUS2 ) {
+                double zxNext = zx * zx - zy * zy + cx;
+                zy = 2.0 * Math.abs(zx * zy) + cy;
+                zx = zxNext;
+                zlen2 = zx * zx + zy * zy;
+                extra++;
+            }
+            fraction[0] = FractalGenerator.smoothFraction(extra, zlen2, LN2);
+        }
+        return iterations;
+    }
+
+    @Override
+    public Viewport getDefaultViewport() { return DEFAULT_VIEWPORT; }
+
+    @Override
+    public boolean equals( Object other ) {
+        return other instanceof BurningShipKernel;
+    }
+
+    @Override
+    public int hashCode() {
+        return BurningShipKernel.class.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Burning Ship";
+    }
+}
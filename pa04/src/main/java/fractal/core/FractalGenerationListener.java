@@ -3,4 +3,9 @@ package fractal.core;
 public interface FractalGenerationListener {
     void imageChanged();
     void imageComplete(double elapsedTime);
+
+    /**
+     * Called right after imageComplete with the measurements of the generation.
+     */
+    default void generationStats(GenerationStats stats) { }
 }
@@ -2,42 +2,265 @@ package fractal.core;
 
 import javafx.application.Platform;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
 public class FractalGenerator {
 
-    // The number of iterations to run.  Set this to a large number so that threads have a lot of work to do.
+    // The default number of iterations to run.  Set this to a large number so that threads have a lot of work to do.
     public static final int MAX_ITERATIONS = 6000;
 
+    // Minimum time between two imageChanged events (roughly one per frame at 60 Hz)
+    private static final long CHANGE_INTERVAL_NANOS = 16_000_000L;
+
+    // Pixel size below which doubles can no longer resolve neighboring pixels well, and
+    // perturbation is used automatically
+    public static final double PERTURBATION_THRESHOLD = 1e-12;
+
+    // Pixel size at or above which the vector kernel iterates in float lanes.  Below it, too
+    // many points cannot be decided in float and are iterated again in double.
+    public static final double FLOAT_THRESHOLD = 0x1p-13;
+
+    // Sample positions within a pixel for anti-aliasing, as offsets from the pixel center: a 4x4
+    // grid, ordered so that the first four samples form a rotated grid (one in each row and
+    // column) that is taken for every edge pixel.  The others are only taken when those four
+    // disagree.
+    private static final double[] SAMPLE_X = new double[16], SAMPLE_Y = new double[16];
+    private static final int FIRST_SAMPLES = 4;
+    static {
+        int[] order = { 1, 7, 8, 14, 0, 2, 3, 4, 5, 6, 9, 10, 11, 12, 13, 15 };
+        for( int k = 0; k < order.length; k++ ) {
+            SAMPLE_X[k] = (order[k] % 4 + 0.5) / 4 - 0.5;
+            SAMPLE_Y[k] = (order[k] / 4 + 0.5) / 4 - 0.5;
+        }
+    }
+
+    private static final double LN2 = Math.log(2.0);
+
+    // The escape radius (squared) up to which orbits are continued for the smooth count
+    static final double SMOOTH_RADIUS2 = 256.0 * 256.0;
+
+    // Sample spacing of the first preview pass.  Each pass halves it, down to full resolution.
+    private static final int PREVIEW_STEP = 4;
+
+    // Rectangles with a side at or below this size are not subdivided further when boundary tracing
+    private static final int MIN_TRACE_SIZE = 6;
+
+    // The region of the complex plane to draw
+    private Viewport viewport;
+
     // Start location in the complex plane
-    private final double xStart, yStart;
+    private double xStart, yStart;
 
     // Size of a pixel in the complex plane
-    private final double xStep, yStep;
+    private double xStep, yStep;
+
+    // The maximum number of iterations for a pixel
+    private int maxIterations = MAX_ITERATIONS;
+
+    // The formula that is iterated
+    private FractalKernel kernel = new MandelbrotKernel();
 
     // The image (shared with the GUI thread)
-    private FractalImage image;
+    private IterationBuffer image;
 
     private List<FractalGenerationListener> listeners;
 
-    public FractalGenerator(FractalImage img) {
+    // True while an imageChanged event is queued on the GUI thread but has not run yet
+    private final AtomicBoolean changePending = new AtomicBoolean(false);
+
+    // Time (System.nanoTime) at which the last imageChanged event was queued
+    private volatile long lastChangeTime;
+
+    // How the image is divided into tiles for the worker threads
+    private TilePartition partition = TilePartition.SQUARES;
+
+    // How the tiles are run on the worker threads
+    private TileScheduler scheduler = TileScheduler.FORK_JOIN;
+
+    // Whether to skip points that are known (or detected) to be inside the set
+    private boolean interiorChecking = false;
+
+    private RenderMode mode = RenderMode.STANDARD;
+
+    // Whether standard tiles are computed with the Vector API kernel
+    private boolean vectorized = false;
+
+    // Whether perturbation is used even at shallow zooms
+    private boolean forcePerturbation = false;
+
+    // Whether the vector kernel may use float lanes for shallow views
+    private boolean reducedPrecision = true;
+
+    // The precision of the current generation
+    private Precision precision = Precision.DOUBLE;
+
+    // The number of pixels iterated in float lanes during the last generation, and how many of
+    // them were iterated again in double
+    private final LongAdder floatPixels = new LongAdder();
+    private final LongAdder floatPixelsRedone = new LongAdder();
+
+    // The reference orbit for the current generation, or null when iterating directly
+    private ReferenceOrbit orbit;
+
+    // Whether a frame is drawn in coarse-to-fine passes
+    private boolean progressive = false;
+
+    // Whether the earlier passes use a lower iteration limit
+    private boolean rampIterations = false;
+
+    // The sample spacing of the pass being drawn (1 for the full resolution pass), and of the
+    // previous pass (0 if there is none).  Samples of the previous pass are reused.
+    private int passStep = 1;
+    private int previousStep = 0;
+
+    // The iteration limit of the pass being drawn
+    private int passIterations;
+
+    // Whether edge pixels are supersampled after the full resolution pass
+    private boolean antialiasing = false;
+
+    // True while the anti-aliasing pass is being drawn
+    private boolean antialiasPass = false;
+
+    // The rows [firstDrawnRow, lastDrawnRow) of the current generation
+    private int firstDrawnRow, lastDrawnRow;
+
+    // The counts of the rows just above and below the drawn rows, for the anti-aliasing pass,
+    // or null at the top and bottom of the image
+    private int[] rowAbove, rowBelow;
+
+    // The number of anti-aliasing samples taken during the last generation
+    private final LongAdder samplesTaken = new LongAdder();
+
+    // Tiles computed by earlier generations, or null
+    private TileCache cache;
+
+    // The tile grid of the current generation: the grid position of the lower left tile that
+    // touches the image, and the pixel offset of the image within that tile
+    private BigInteger gridColumn, gridRow;
+    private int gridOffsetX, gridOffsetY;
+
+    // Telemetry of the current generation: busy time and tiles of each worker, the tiles of the
+    // full resolution pass and the time spent on each, and the iterations executed
+    private AtomicLongArray workerBusy;
+    private AtomicIntegerArray workerTiles;
+    private List<Tile> frameTiles = List.of();
+    private AtomicLongArray tileNanos;
+    private final LongAdder iterationsExecuted = new LongAdder();
+
+    // The tiles that each thread is running, which is more than one when a fork/join worker
+    // waiting for boundary tracing subtasks runs another tile meanwhile
+    private static final ThreadLocal<TileNesting> tileNesting = ThreadLocal.withInitial(TileNesting::new);
+
+    private static final class TileNesting {
+        int depth;
+        // The time spent on tiles nested in the innermost tile so far
+        long nestedNanos;
+    }
+
+    // The previous frame of an animation and its viewport, or null
+    private IterationBuffer previousFrame;
+    private Viewport previousViewport;
+
+    // Whether the previous frame is used in the current generation, and the position of the
+    // center of the current view in the previous frame, in its pixels, and the size of a pixel
+    // relative to the pixels of the previous frame
+    private boolean usePreviousFrame;
+    private double previousOffsetX, previousOffsetY;
+    private double previousScaleX, previousScaleY;
+
+    // The number of pixels filled in from the previous frame during the last generation
+    private final LongAdder pixelsFromPreviousFrame = new LongAdder();
+
+    // The measurements of the last finished generation
+    private volatile GenerationStats lastStats;
+
+    // The number of pixels computed with iterate during the last generation
+    private final LongAdder pixelsIterated = new LongAdder();
+
+    // Incremented by each call to generate or cancel.  A generation is cancelled as soon as this
+    // no longer matches the number it was started with.
+    private volatile int generation;
+
+    // The generation number the workers are currently running for
+    private int activeRun;
+
+    // The thread running the most recent call to generate
+    private Thread generationThread;
+
+    public FractalGenerator(IterationBuffer img) {
         this.image = img;
+        setViewport(Viewport.DEFAULT);
+
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Set the region of the complex plane to draw.  This applies to the next generation.  A
+     * generation that is running must be cancelled first: its workers read the settings as they
+     * go, and a tile finished with a mix of old and new settings would be cached.
+     * @param viewport the viewport
+     */
+    public void setViewport( Viewport viewport ) {
+        int width = image.getWidth(), height = image.getHeight();
+        this.viewport = cache != null ? viewport.snapToGrid(width, height) : viewport;
 
         // Lower left corner in the complex plane
-        this.xStart = -2.0;
-        this.yStart = -1.0;
+        xStart = this.viewport.getXStart(width, height);
+        yStart = this.viewport.getYStart(width, height);
 
-        double ar = (double)image.getWidth() / image.getHeight();  // Aspect ratio
-        double cHeight = 2.0;                // Height in complex plane
-        double cWidth = ar * cHeight;        // Width in complex plane
+        xStep = this.viewport.getXStep(width, height);
+        yStep = this.viewport.getYStep(width, height);
+    }
+
+    public Viewport getViewport() { return viewport; }
+
+    /**
+     * Use a tile cache.  Tiles found in the cache are copied instead of computed, and computed
+     * tiles are added to it, so regions that were generated before appear at once.  With a
+     * cache, the viewport is snapped to the pixel grid (moving it by less than a pixel), and the
+     * image is divided along the cache's tile grid instead of by the partition.
+     * @param cache the cache, or null to compute every tile
+     */
+    public void setTileCache( TileCache cache ) {
+        this.cache = cache;
+        setViewport(viewport);
+    }
+
+    public TileCache getTileCache() { return cache; }
+
+    /**
+     * Set the maximum number of iterations for a pixel.  Points that have not escaped after this
+     * many iterations are considered part of the set.
+     * @param maxIterations the iteration limit
+     */
+    public void setMaxIterations( int maxIterations ) {
+        this.maxIterations = maxIterations;
+    }
 
-        xStep = cWidth / image.getWidth();
-        yStep = cHeight / image.getHeight();
+    public int getMaxIterations() { return maxIterations; }
 
-        this.listeners = new ArrayList<>();
+    /**
+     * Set the formula that is iterated.  The vector kernel and perturbation only support the
+     * Mandelbrot kernel; with other kernels they are not used, and pixels are always iterated
+     * in double precision.
+     * @param kernel the kernel
+     */
+    public void setKernel( FractalKernel kernel ) {
+        this.kernel = kernel;
     }
 
+    public FractalKernel getKernel() { return kernel; }
+
     /**
      * Add an object that receives generation events
      * @param listener the listener object.
@@ -47,71 +270,965 @@ public class FractalGenerator {
     }
 
     /**
-     * Iterate the Mandelbrot function for the given pixel.
+     * Set the strategy used to divide the image into tiles.
+     * @param partition the partition strategy
+     */
+    public void setPartition( TilePartition partition ) {
+        this.partition = partition;
+    }
+
+    public TilePartition getPartition() { return partition; }
+
+    /**
+     * Set how the tiles are run on the worker threads.  This takes effect at the next generation.
+     * @param scheduler the scheduler
+     */
+    public void setScheduler( TileScheduler scheduler ) {
+        this.scheduler = scheduler;
+    }
+
+    public TileScheduler getScheduler() { return scheduler; }
+
+    /**
+     * Enable or disable the interior fast path (see FractalKernel.iterateChecked).  For the
+     * Mandelbrot set, points inside the main cardioid or the period-2 bulb are recognized
+     * without iterating, and orbits that return exactly to an earlier value are stopped early.
+     * The generated image is the same either way.
+     * @param interiorChecking true to enable the fast path
+     */
+    public void setInteriorChecking( boolean interiorChecking ) {
+        this.interiorChecking = interiorChecking;
+    }
+
+    public boolean isInteriorChecking() { return interiorChecking; }
+
+    /**
+     * Set the way tiles are filled in.
+     * @param mode the render mode
+     */
+    public void setRenderMode( RenderMode mode ) {
+        this.mode = mode;
+    }
+
+    public RenderMode getRenderMode() { return mode; }
+
+    /**
+     * Select the kernel used for STANDARD tiles.  The vector kernel iterates several adjacent
+     * pixels at once with SIMD instructions and produces the same iteration counts as the scalar
+     * kernel.  It requires the JVM option --add-modules jdk.incubator.vector.  Boundary tracing
+     * always uses the scalar kernel, and so do kernels other than the Mandelbrot kernel.
+     * @param vectorized true for the vector kernel, false for the scalar kernel
+     */
+    public void setVectorized( boolean vectorized ) {
+        this.vectorized = vectorized;
+    }
+
+    public boolean isVectorized() { return vectorized; }
+
+    /**
+     * Use perturbation (deep zoom) iteration even when the pixel size is above
+     * PERTURBATION_THRESHOLD.  Below the threshold it is always used.  With perturbation, only
+     * the reference orbit at the center of the view is computed in high precision, and all
+     * pixels are iterated in double precision relative to it.  Interior checking and the vector
+     * kernel do not apply to perturbation.
+     * @param forcePerturbation true to always use perturbation
+     */
+    public void setForcePerturbation( boolean forcePerturbation ) {
+        this.forcePerturbation = forcePerturbation;
+    }
+
+    public boolean isForcePerturbation() { return forcePerturbation; }
+
+    /**
+     * @return true if the last generation used perturbation iteration
+     */
+    public boolean usedPerturbation() { return orbit != null; }
+
+    /**
+     * Allow the vector kernel to iterate in float lanes, twice as many per vector, when the
+     * pixel size is at least FLOAT_THRESHOLD.  Only the iteration counts are the same as in
+     * double precision: the fractions (for smooth coloring) are computed from the float value of
+     * z at escape and differ by up to 3e-4, so the image is not byte-identical.  This does not
+     * apply with interior checking, whose double loop is faster.
+     * @param reducedPrecision true to use float lanes where possible (the default)
+     */
+    public void setReducedPrecision( boolean reducedPrecision ) {
+        this.reducedPrecision = reducedPrecision;
+    }
+
+    public boolean isReducedPrecision() { return reducedPrecision; }
+
+    /**
+     * @return the precision of the last generation
+     */
+    public Precision getPrecision() { return precision; }
+
+    /**
+     * Draw frames in coarse-to-fine passes: first one pixel in 16, then one in 4, each filling
+     * the block around it, then every pixel.  Pixels that were already computed in an earlier
+     * pass are not computed again, except by the vector kernel and by boundary tracing, which
+     * always compute the full resolution pass from scratch.  The preview passes always use
+     * square tiles.
+     * @param progressive true to draw preview passes first
+     */
+    public void setProgressive( boolean progressive ) {
+        this.progressive = progressive;
+    }
+
+    public boolean isProgressive() { return progressive; }
+
+    /**
+     * Raise the iteration limit over the progressive passes: the preview passes use 1/16 and
+     * 1/4 of the maximum number of iterations, which makes them faster, but shows more points
+     * near the boundary as part of the set.  Those points are computed again by later passes.
+     * @param rampIterations true to raise the iteration limit over the passes
+     */
+    public void setRampIterations( boolean rampIterations ) {
+        this.rampIterations = rampIterations;
+    }
+
+    public boolean isRampIterations() { return rampIterations; }
+
+    /**
+     * Enable anti-aliasing.  After the full resolution pass, every pixel whose count differs
+     * from one of its four neighbors is sampled at four points within the pixel, and at
+     * sixteen if those four do not agree.  The pixel is colored with the average color of its
+     * samples.  Other pixels keep their single sample, so this costs much less than
+     * supersampling the whole image.  The samples are not cached.
+     * @param antialiasing true to supersample edge pixels
+     */
+    public void setAntialiasing( boolean antialiasing ) {
+        this.antialiasing = antialiasing;
+    }
+
+    public boolean isAntialiasing() { return antialiasing; }
+
+    /**
+     * Use the previous frame of an animation as a hint for where the set is.  In the full
+     * resolution pass, a tile that covers points of the previous frame that were inside the set
+     * is drawn by boundary tracing (see TraceTask), which fills the parts of it whose border is
+     * entirely inside without iterating them.  Every filled region is confirmed by iterating its
+     * border in the current frame, so the hint only decides where tracing is tried; a wrong hint
+     * costs speed, not accuracy.  Escape counts cannot be reused, because the pixels of frames
+     * of different scales do not lie at the same points.  As with boundary tracing, this is only
+     * done for kernels where FractalKernel.hasConnectedExterior holds.
+     * @param frame the previous frame, which must have the same size as the image and must
+     *              hold all of its rows, and must not change during the generation; or null
+     * @param viewport the viewport of the previous frame
+     */
+    public void setPreviousFrame( IterationBuffer frame, Viewport viewport ) {
+        this.previousFrame = frame;
+        this.previousViewport = viewport;
+    }
+
+    /**
+     * @return the number of pixels that were filled in without iterating, in tiles traced because
+     *         of the previous frame, during the last generation
+     */
+    public long getPixelsFromPreviousFrame() { return pixelsFromPreviousFrame.sum(); }
+
+    /**
+     * @return the number of extra samples taken by anti-aliasing during the last generation
+     */
+    public long getSamplesTaken() { return samplesTaken.sum(); }
+
+    /**
+     * @return the measurements of the last generation that finished without being cancelled,
+     *         or null if there is none
+     */
+    public GenerationStats getLastStats() { return lastStats; }
+
+    /**
+     * @return the number of pixels that were computed by iterating during the last generation.
+     *         Pixels filled in by boundary tracing are not counted.
+     */
+    public long getPixelsIterated() { return pixelsIterated.sum(); }
+
+    /**
+     * Iterate the kernel for the given pixel.
      * @param px the x location of the pixel (pixel column)
      * @param py the y location of the pixel (pixel row)
      * @return the number of iterations required to reach a magnitude of 2.0 or more, or zero if we reached the
      *         maximum number of iterations.
      */
-    private int iterate(int px, int py) {
-        int height = image.getHeight();
+    int iterate(int px, int py) {
+        return iterate(px, py, maxIterations, null);
+    }
+
+    /**
+     * Same as iterate(px, py), at a point that may lie between pixel centers, and with a
+     * different iteration limit.  A point that escapes within a lower limit has the same count
+     * with any higher limit.
+     * @param fraction if not null, element 0 receives the fractional part of the count (see
+     *                 smoothFraction), or zero if the point did not escape
+     */
+    private int iterate(double px, double py, int maxIterations, float[] fraction) {
+        if( orbit != null ) {
+            // Offsets from the center of the view, which is the reference point
+            double dcx = (px - image.getWidth() / 2.0) * xStep;
+            double dcy = (image.getHeight() - py - 1 - image.getHeight() / 2.0) * yStep;
+            return orbit.iterate(dcx, dcy, maxIterations, fraction);
+        }
 
         // Convert the pixel location to the corresponding location in the complex plane
         double cx = xStep * px + xStart;
-        double cy = yStep * (height - py - 1) + yStart;
+        double cy = yStep * (image.getHeight() - py - 1) + yStart;
+
+        if( interiorChecking ) return kernel.iterateChecked(cx, cy, maxIterations, fraction);
+        return kernel.iterate(cx, cy, maxIterations, fraction);
+    }
 
-        // Perform the iterations starting with (0,0)
-        double zx = 0.0, zy = 0.0;
-        double zlen2 = 0.0;
-        int iterations = 0;
-        while(iterations < MAX_ITERATIONS && zlen2 <= 4.0 ) {
+    /**
+     * Returns whether any pixel of the previous frame within the area of a tile was inside the
+     * set.
+     */
+    private boolean insideInPreviousFrame( Tile tile ) {
+        int width = image.getWidth(), height = image.getHeight();
+        int x0 = Math.max(0, (int) Math.floor(previousX(tile.getX())));
+        int x1 = Math.min(width - 1, (int) Math.ceil(previousX(tile.getX() + tile.getWidth() - 1)));
+        int y0 = Math.max(0, (int) Math.floor(previousY(tile.getY())));
+        int y1 = Math.min(height - 1, (int) Math.ceil(previousY(tile.getY() + tile.getHeight() - 1)));
+        for( int j = y0; j <= y1; j++ ) {
+            for( int i = x0; i <= x1; i++ ) {
+                if( previousFrame.getIterations(i, j) == 0 ) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the column of the previous frame at a column of the image
+     */
+    private double previousX( int px ) {
+        int width = image.getWidth();
+        return (px - width / 2.0) * previousScaleX + previousOffsetX + width / 2.0;
+    }
+
+    /**
+     * @return the row of the previous frame at a row of the image
+     */
+    private double previousY( int py ) {
+        int height = image.getHeight();
+        return height / 2.0 - (height - py - 1 - height / 2.0) * previousScaleY - previousOffsetY - 1;
+    }
+
+    /**
+     * Returns the result of an iteration loop of a power 2 map that ended with |z|^2 = zlen2.
+     * The fraction is computed from zlen2 alone (see smoothFraction(int, double, double)).
+     * @return the number of iterations if the point escaped, zero otherwise
+     */
+    static int escaped( int iterations, double zlen2, float[] fraction ) {
+        if( zlen2 <= 4.0 ) {
+            if( fraction != null ) fraction[0] = 0;
+            return 0;
+        }
+        if( fraction != null ) fraction[0] = smoothFraction(0, zlen2, LN2);
+        return iterations;
+    }
+
+    /**
+     * Returns the result of an iteration loop of the map z^2 + c that ended with z.
+     * @return the number of iterations if the point escaped, zero otherwise
+     */
+    static int escaped( int iterations, double zx, double zy, double cx, double cy, float[] fraction ) {
+        if( zx * zx + zy * zy <= 4.0 ) {
+            if( fraction != null ) fraction[0] = 0;
+            return 0;
+        }
+        if( fraction != null ) fraction[0] = smoothFraction(zx, zy, cx, cy);
+        return iterations;
+    }
+
+    /**
+     * Returns the fractional part of the smooth (continuous) iteration count of a point of the
+     * map z^2 + c that escaped after n iterations at z.  The orbit is continued until |z|
+     * exceeds 256 (see smoothFraction(int, double, double)).
+     */
+    static float smoothFraction( double zx, double zy, double cx, double cy ) {
+        double zlen2 = zx * zx + zy * zy;
+        int extra = 0;
+        while( zlen2 <= SMOOTH_RADIUS2 ) {
             double zxNext = zx * zx - zy * zy + cx;
-            double zyNext = 2.0 * zx * zy + cy;
+            zy = 2.0 * zx * zy + cy;
             zx = zxNext;
-            zy = zyNext;
             zlen2 = zx * zx + zy * zy;
-            iterations++;
+            extra++;
         }
-        if( zlen2 <= 4.0 ) {
-            return 0;
+        return smoothFraction(extra, zlen2, LN2);
+    }
+
+    /**
+     * Returns the fractional part of the smooth (continuous) iteration count of a point that
+     * first exceeded |z| = 2 after n iterations, and reached |z|^2 = zlen2 after extra more
+     * iterations of a map of power d.  The smooth count is n + extra + 1 - log_d(log2(|z|)),
+     * which is n plus this fraction.  Unlike n, it changes continuously across the border
+     * between two counts, so coloring with it has no bands.
+     *
+     * The formula assumes that z^d dominates c, which is only roughly true just past |z| = 2,
+     * so computed there (extra = 0) the smooth count still jumps a little at each border.  The
+     * callers continue the orbit past |z| = 256 first, which takes a few iterations, and then
+     * the smooth count hardly depends on where the orbit first exceeded 2.  The borders of the
+     * counts are not quite lines of equal smooth count, though, so the fraction is not
+     * clamped: it is usually from 0 to 1, but lies a little outside near the borders (and up to
+     * a few units outside for orbits that linger near |z| = 2).
+     * @param logPower the natural logarithm of the power d
+     * @return the fraction
+     */
+    static float smoothFraction( int extra, double zlen2, double logPower ) {
+        return (float) (extra + 1.0 - Math.log(0.5 * Math.log(zlen2) / LN2) / logPower);
+    }
+
+    /**
+     * @return the real part of the point sampled for the given pixel column
+     */
+    double pixelX( int px ) {
+        return xStep * px + xStart;
+    }
+
+    /**
+     * @return the imaginary part of the point sampled for the given pixel row.  Rows are
+     *         counted from the top of the image, while the imaginary axis points up.
+     */
+    double pixelY( int py ) {
+        return yStep * (image.getHeight() - py - 1) + yStart;
+    }
+
+    /**
+     * Compute all pixels of a single tile, write them to the image and mark the tile
+     * as finished.
+     * @param tile the tile
+     */
+    private void drawTile( Tile tile ) {
+        boolean traceable = tile.getRowStride() == 1 && kernel.hasConnectedExterior();
+        if( traceable && mode == RenderMode.BOUNDARY_TRACE ) {
+            new TraceTask(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), false).invoke();
+        } else if( traceable && usePreviousFrame && insideInPreviousFrame(tile) ) {
+            new TraceTask(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), true).invoke();
+        } else if( vectorized && orbit == null && kernel instanceof MandelbrotKernel ) {
+            drawTileVector(tile);
         } else {
-            return iterations;
+            int x0 = tile.getX();
+            int x1 = x0 + tile.getWidth();
+            int reused = 0;
+            long executed = 0;
+            float[] fraction = new float[1];
+            for( int r = 0; r < tile.getHeight(); r++ ) {
+                if( isCancelled() ) return;
+                int j = tile.getRow(r);
+                for( int i = x0; i < x1; i++ ) {
+                    if( previousStep > 0 && isKnown(i, j) ) {
+                        reused++;
+                        continue;
+                    }
+                    int iterations = iterate(i, j, maxIterations, fraction);
+                    image.writePixel(i, j, iterations, fraction[0]);
+                    executed += executed(iterations, maxIterations);
+                }
+            }
+            pixelsIterated.add(tile.getPixelCount() - reused);
+            iterationsExecuted.add(executed);
         }
+        if( isCancelled() ) return;
+        image.markDirty(tile);
+        notifyChanged();
     }
 
-    private void drawImage( ) {
-        int height = image.getHeight();
+    /**
+     * Draw a preview pass of a tile: compute one pixel in every passStep x passStep block and
+     * fill the block with it.  Blocks are aligned to the image, and cut off at the tile edges.
+     */
+    private void drawCoarseTile( Tile tile ) {
+        int step = passStep;
+        int x1 = tile.getX() + tile.getWidth();
+        int y1 = tile.getY() + tile.getHeight();
+        int computed = 0;
+        long executed = 0;
+        float[] fraction = new float[1];
+        for( int j = roundUp(tile.getY(), step); j < y1; j += step ) {
+            if( isCancelled() ) return;
+            for( int i = roundUp(tile.getX(), step); i < x1; i += step ) {
+                int iterations;
+                if( previousStep > 0 && isKnown(i, j) ) {
+                    iterations = image.getIterations(i, j);
+                    fraction[0] = image.getFraction(i, j);
+                } else {
+                    iterations = iterate(i, j, passIterations, fraction);
+                    executed += executed(iterations, passIterations);
+                    computed++;
+                }
+                image.fill(i, j, Math.min(step, x1 - i), Math.min(step, y1 - j), iterations);
+                image.writePixel(i, j, iterations, fraction[0]);
+            }
+        }
+        pixelsIterated.add(computed);
+        iterationsExecuted.add(executed);
+        image.markDirty(tile);
+        notifyChanged();
+    }
+
+    /**
+     * Supersample the edge pixels of a tile, and remove the samples of all other pixels.
+     */
+    private void drawAntialiasTile( Tile tile ) {
+        int x0 = tile.getX();
+        int x1 = x0 + tile.getWidth();
+        int taken = 0;
+        long executed = 0;
+        float[] fraction = new float[1];
+        for( int r = 0; r < tile.getHeight(); r++ ) {
+            if( isCancelled() ) return;
+            int j = tile.getRow(r);
+            for( int i = x0; i < x1; i++ ) {
+                if( !isEdge(i, j) ) {
+                    image.writeSamples(i, j, null);
+                    continue;
+                }
+                float[] samples = new float[FIRST_SAMPLES];
+                int first = 0;
+                boolean uniform = true;
+                for( int k = 0; k < FIRST_SAMPLES; k++ ) {
+                    int n = iterate(i + SAMPLE_X[k], j + SAMPLE_Y[k], maxIterations, fraction);
+                    samples[k] = n + fraction[0];
+                    executed += executed(n, maxIterations);
+                    if( k == 0 ) first = n;
+                    uniform &= n == first;
+                }
+                if( !uniform ) {
+                    samples = Arrays.copyOf(samples, SAMPLE_X.length);
+                    for( int k = FIRST_SAMPLES; k < samples.length; k++ ) {
+                        int n = iterate(i + SAMPLE_X[k], j + SAMPLE_Y[k], maxIterations, fraction);
+                        samples[k] = n + fraction[0];
+                        executed += executed(n, maxIterations);
+                    }
+                }
+                image.writeSamples(i, j, samples);
+                taken += samples.length;
+            }
+        }
+        samplesTaken.add(taken);
+        iterationsExecuted.add(executed);
+        image.markDirty(tile);
+        notifyChanged();
+    }
+
+    /**
+     * Returns whether a pixel's count differs from that of a neighbor in the image.
+     */
+    private boolean isEdge( int i, int j ) {
+        int iterations = image.getIterations(i, j);
+        return (i > 0 && image.getIterations(i - 1, j) != iterations)
+                || (i < image.getWidth() - 1 && image.getIterations(i + 1, j) != iterations)
+                || (j > 0 && rowIterations(i, j - 1) != iterations)
+                || (j < image.getHeight() - 1 && rowIterations(i, j + 1) != iterations);
+    }
+
+    /**
+     * @return the count of a pixel in the drawn rows or in the row just above or below them
+     */
+    private int rowIterations( int i, int j ) {
+        if( j < firstDrawnRow ) return rowAbove[i];
+        if( j >= lastDrawnRow ) return rowBelow[i];
+        return image.getIterations(i, j);
+    }
+
+    /**
+     * Iterate a row outside the rows being drawn, which the image may not hold.
+     * @return the counts of the row
+     */
+    private int[] iterateRow( int j ) {
+        int[] counts = new int[image.getWidth()];
+        long executed = 0;
+        for( int i = 0; i < counts.length; i++ ) {
+            counts[i] = iterate(i, j, maxIterations, null);
+            executed += executed(counts[i], maxIterations);
+        }
+        iterationsExecuted.add(executed);
+        return counts;
+    }
+
+    /**
+     * @return the number of iterations executed for a pixel with the given result, counting
+     *         points that did not escape at the limit
+     */
+    private static int executed( int iterations, int limit ) {
+        return iterations == 0 ? limit : iterations;
+    }
+
+    private static int roundUp( int value, int step ) {
+        return (value + step - 1) / step * step;
+    }
+
+    /**
+     * Returns whether a pixel was sampled by the previous pass with a valid count.  A count of
+     * zero is only final if the previous pass had the same iteration limit.
+     */
+    private boolean isKnown( int i, int j ) {
+        return i % previousStep == 0 && j % previousStep == 0
+                && (!rampIterations || image.getIterations(i, j) != 0);
+    }
+
+    /**
+     * Compute the pixels of a tile one row at a time with the vector kernel, in float lanes if
+     * the precision of the generation is FLOAT.
+     */
+    private void drawTileVector( Tile tile ) {
+        int x0 = tile.getX();
+        int w = tile.getWidth();
+        boolean useFloat = precision == Precision.FLOAT;
+        int lanes = useFloat ? VectorKernel.floatLaneCount() : VectorKernel.laneCount();
+
+        // The row is padded to a whole number of vectors.  The extra lanes are discarded.
+        double[] cx = new double[(w + lanes - 1) / lanes * lanes];
+        float[] cxf = useFloat ? new float[cx.length] : null;
+        for( int k = 0; k < cx.length; k++ ) {
+            cx[k] = pixelX(x0 + k);
+            if( useFloat ) cxf[k] = (float) cx[k];
+        }
+        int[] row = new int[w];
+        float[] fractions = new float[w];
+
+        int redone = 0;
+        for( int r = 0; r < tile.getHeight(); r++ ) {
+            if( isCancelled() ) return;
+            int j = tile.getRow(r);
+            if( useFloat ) {
+                redone += VectorKernel.iterateRowFloat(cx, cxf, pixelY(j), w, maxIterations, row, fractions);
+            } else {
+                VectorKernel.iterateRow(cx, pixelY(j), w, maxIterations, interiorChecking, row, fractions);
+            }
+            long executed = 0;
+            for( int k = 0; k < w; k++ ) {
+                image.writePixel(x0 + k, j, row[k], fractions[k]);
+                executed += executed(row[k], maxIterations);
+            }
+            iterationsExecuted.add(executed);
+        }
+        pixelsIterated.add(tile.getPixelCount());
+        if( useFloat ) {
+            floatPixels.add(tile.getPixelCount());
+            floatPixelsRedone.add(redone);
+        }
+    }
+
+    /**
+     * Copy a tile from the cache if it is there, and otherwise compute it and add it to the cache.
+     * The tile must lie within a single tile of the cache's grid.
+     */
+    private void drawCachedTile( Tile tile ) {
+        int size = TileCache.TILE_SIZE;
+        int gx = gridOffsetX + tile.getX();
+        int gy = gridOffsetY + image.getHeight() - 1 - tile.getY();
+        TileCache.Key key = new TileCache.Key(kernel, yStep, maxIterations, precision,
+                gridColumn.add(BigInteger.valueOf(gx / size)), gridRow.add(BigInteger.valueOf(gy / size)));
+
+        // The position of the tile within the cached tile, whose rows are counted from the top
+        int lx = gx % size, ly = size - 1 - gy % size;
+        int w = tile.getWidth(), h = tile.getHeight();
+
+        TileCache.Entry entry = cache.get(key, lx, ly, w, h);
+        if( entry != null ) {
+            for( int r = 0; r < h; r++ ) {
+                for( int i = 0; i < w; i++ ) {
+                    int k = (ly + r) * size + lx + i;
+                    image.writePixel(tile.getX() + i, tile.getY() + r, entry.iterations[k], entry.fractions[k]);
+                }
+            }
+            image.markDirty(tile);
+            notifyChanged();
+            return;
+        }
+
+        drawTile(tile);
+        if( isCancelled() ) return;
+        entry = new TileCache.Entry(lx, ly, w, h);
+        for( int r = 0; r < h; r++ ) {
+            for( int i = 0; i < w; i++ ) {
+                int k = (ly + r) * size + lx + i;
+                entry.iterations[k] = image.getIterations(tile.getX() + i, tile.getY() + r);
+                entry.fractions[k] = image.getFraction(tile.getX() + i, tile.getY() + r);
+            }
+        }
+        cache.put(key, entry);
+    }
+
+    /**
+     * Divide the rows [firstRow, firstRow + rows) along the tile grid of the cache.  Tiles at the
+     * edges of the image are cut off.
+     */
+    private List<Tile> gridTiles( int firstRow, int rows ) {
+        int size = TileCache.TILE_SIZE;
         int width = image.getWidth();
+        int lastRow = firstRow + rows;
+
+        // The first tile starts at or before pixel (0, 0)
+        int x0 = (size - gridOffsetX) % size - size;
+        int y0 = (gridOffsetY + image.getHeight()) % size - size;
 
-        // For each pixel calculate the number of iterations and write the pixel
-        // to the image.
-        for( int i = 0; i < width; i++ ) {
-            for( int j = 0; j < height; j++ ) {
-                int iterations = iterate(i,j);
-                image.writePixel(i,j, iterations);
+        List<Tile> tiles = new ArrayList<>();
+        for( int y = y0; y < lastRow; y += size ) {
+            int top = Math.max(y, firstRow), bottom = Math.min(y + size, lastRow);
+            if( bottom <= top ) continue;
+            for( int x = x0; x < width; x += size ) {
+                int left = Math.max(x, 0), right = Math.min(x + size, width);
+                if( right <= left ) continue;
+                tiles.add(new Tile(left, top, right - left, bottom - top));
             }
         }
+        return tiles;
+    }
+
+    private void drawImage( TileScheduler scheduler, int threads, int firstRow, int rows ) {
+        try( TileScheduler.Workers workers = scheduler.start(threads) ) {
+            previousStep = 0;
+            if( progressive ) {
+                List<Tile> squares = new ArrayList<>();
+                for( Tile tile : TilePartition.SQUARES.split(image.getWidth(), rows, threads) ) {
+                    squares.add(tile.translate(0, firstRow));
+                }
+                for( int step = PREVIEW_STEP; step > 1; step /= 2 ) {
+                    passStep = step;
+                    passIterations = rampIterations ? Math.max(1, maxIterations / (step * step)) : maxIterations;
+                    workers.run(squares.size(), (i, worker) -> runTile(squares, i, worker));
+                    if( isCancelled() ) return;
+                    previousStep = step;
+                }
+            }
+
+            List<Tile> tiles;
+            if( cache != null ) {
+                tiles = gridTiles(firstRow, rows);
+            } else {
+                tiles = new ArrayList<>();
+                for( Tile tile : partition.split(image.getWidth(), rows, threads) ) {
+                    tiles.add(tile.translate(0, firstRow));
+                }
+            }
+            passStep = 1;
+            passIterations = maxIterations;
+            frameTiles = tiles;
+            tileNanos = new AtomicLongArray(tiles.size());
+            workers.run(tiles.size(), (i, worker) -> runTile(tiles, i, worker));
+
+            if( antialiasing && !isCancelled() ) {
+                firstDrawnRow = firstRow;
+                lastDrawnRow = firstRow + rows;
+
+                // Edges across the top and bottom of a strip need the neighboring rows
+                int[][] halo = new int[2][];
+                workers.run(2, (i, worker) -> {
+                    int j = i == 0 ? firstRow - 1 : firstRow + rows;
+                    if( j >= 0 && j < image.getHeight() ) halo[i] = iterateRow(j);
+                });
+                rowAbove = halo[0];
+                rowBelow = halo[1];
+                antialiasPass = true;
+                workers.run(tiles.size(), (i, worker) -> runTile(tiles, i, worker));
+            }
+        } finally {
+            previousStep = 0;
+            antialiasPass = false;
+            rowAbove = rowBelow = null;
+        }
+    }
+
+    /**
+     * Generate the fractal image.  The work is done by a background thread, so this method returns
+     * immediately.  Listeners receive imageChanged events while the image is being generated
+     * and an imageComplete event when it is done, all on the JavaFX application thread.
+     *
+     * If a generation is already running it is cancelled.  The new generation starts (and clears
+     * the image) as soon as the workers of the old one have stopped, which takes at most the time
+     * to compute one row of a tile.  A cancelled generation sends no imageComplete event.
+     * @param threads the number of threads to use during generation
+     */
+    public synchronized void generate(int threads) {
+        int run = ++generation;
+        Thread previous = generationThread;
+
+        generationThread = new Thread( () -> {
+            if( previous != null ) {
+                try {
+                    previous.join();
+                } catch( InterruptedException e ) {
+                    return;
+                }
+            }
+            if( run != generation ) return;
+
+            // Clear the image
+            image.clear();
+            double time = renderRun(run, threads, 0, image.getHeight());
+
+            // Notify the listeners that the image is complete
+            if( run == generation ) {
+                notifyComplete(time);
+            }
+        }, "fractal-generator");
+        generationThread.setDaemon(true);
+        generationThread.start();
+    }
+
+    /**
+     * Cancel the generation in progress, if any.  The workers stop after the row they are working
+     * on, and no imageComplete event is sent.
+     */
+    public synchronized void cancel() {
+        generation++;
     }
 
     /**
-     * Generate the fractal image.
+     * @return true if the generation the workers are running for has been cancelled.  This is
+     *         a single volatile read, so workers call it once per row.
+     */
+    public boolean isCancelled() {
+        return activeRun != generation;
+    }
+
+    /**
+     * Generate the fractal image and wait until it is finished.  Every pixel of the image is
+     * overwritten.  Listeners receive imageChanged events, but no imageComplete event.  Without
+     * listeners this does not use the JavaFX toolkit at all, so it can run headless.
+     * @param threads the number of threads to use during generation
+     * @return the elapsed time in seconds
+     */
+    public double render(int threads) {
+        return render(threads, 0, image.getHeight());
+    }
+
+    /**
+     * Generate a horizontal strip of the fractal image and wait until it is finished.  This is
+     * the same as render(threads) restricted to the rows [firstRow, firstRow + rows).
      * @param threads the number of threads to use during generation
+     * @param firstRow the first row to generate
+     * @param rows the number of rows to generate
+     * @return the elapsed time in seconds
      */
-    public void generate(int threads) {
-        // Clear the image
-        image.clear();
+    public double render(int threads, int firstRow, int rows) {
+        return renderRun(generation, threads, firstRow, rows);
+    }
 
+    private double renderRun(int run, int threads, int firstRow, int rows) {
+        activeRun = run;
+        pixelsIterated.reset();
+        samplesTaken.reset();
+        iterationsExecuted.reset();
+        threads = Math.max(1, threads);
+        workerBusy = new AtomicLongArray(threads);
+        workerTiles = new AtomicIntegerArray(threads);
+        frameTiles = List.of();
+        tileNanos = new AtomicLongArray(0);
+        long startNanos = System.nanoTime();
         long start = System.currentTimeMillis();
-        drawImage();
+        boolean deep = kernel instanceof MandelbrotKernel && (forcePerturbation || yStep < PERTURBATION_THRESHOLD);
+        orbit = deep ? ReferenceOrbit.of(viewport, maxIterations) : null;
+        if( deep ) {
+            precision = Precision.PERTURBATION;
+        } else if( reducedPrecision && vectorized && !interiorChecking && kernel instanceof MandelbrotKernel
+                && Math.min(xStep, yStep) >= FLOAT_THRESHOLD && maxIterations <= 1 << 24 ) {
+            precision = Precision.FLOAT;
+        } else {
+            precision = Precision.DOUBLE;
+        }
+        floatPixels.reset();
+        floatPixelsRedone.reset();
+        pixelsFromPreviousFrame.reset();
+        usePreviousFrame = previousFrame != null && kernel.hasConnectedExterior();
+        if( usePreviousFrame ) {
+            int width = image.getWidth(), height = image.getHeight();
+            double previousXStep = previousViewport.getXStep(width, height);
+            double previousYStep = previousViewport.getYStep(width, height);
+            previousOffsetX = viewport.getExactCenterX().subtract(previousViewport.getExactCenterX()).doubleValue() / previousXStep;
+            previousOffsetY = viewport.getExactCenterY().subtract(previousViewport.getExactCenterY()).doubleValue() / previousYStep;
+            previousScaleX = xStep / previousXStep;
+            previousScaleY = yStep / previousYStep;
+        }
+        if( cache != null ) {
+            BigInteger size = BigInteger.valueOf(TileCache.TILE_SIZE);
+            BigInteger gx = viewport.getGridX(image.getWidth(), image.getHeight());
+            BigInteger gy = viewport.getGridY(image.getWidth(), image.getHeight());
+            gridOffsetX = gx.mod(size).intValue();
+            gridOffsetY = gy.mod(size).intValue();
+            gridColumn = gx.subtract(BigInteger.valueOf(gridOffsetX)).divide(size);
+            gridRow = gy.subtract(BigInteger.valueOf(gridOffsetY)).divide(size);
+        }
+        TileScheduler scheduler = this.scheduler;
+        drawImage(scheduler, threads, firstRow, rows);
         long end = System.currentTimeMillis();
 
-        // Notify the listeners that the image is complete
-        notifyComplete( (end - start) / 1000.0 );
+        // Float lanes are only used by the vector kernel, which some tiles do not use
+        if( precision == Precision.FLOAT && floatPixels.sum() == 0 ) precision = Precision.DOUBLE;
+        if( !isCancelled() ) {
+            lastStats = collectStats(scheduler, (System.nanoTime() - startNanos) / 1e9, (long) image.getWidth() * rows);
+        }
+        return (end - start) / 1000.0;
+    }
+
+    private GenerationStats collectStats( TileScheduler scheduler, double elapsedTime, long pixels ) {
+        long[] busy = new long[workerBusy.length()];
+        int[] counts = new int[busy.length];
+        for( int w = 0; w < busy.length; w++ ) {
+            busy[w] = workerBusy.get(w);
+            counts[w] = workerTiles.get(w);
+        }
+        long[] nanos = new long[tileNanos.length()];
+        for( int i = 0; i < nanos.length; i++ ) {
+            nanos[i] = tileNanos.get(i);
+        }
+        return new GenerationStats(scheduler, precision, floatPixels.sum(), floatPixelsRedone.sum(), elapsedTime, busy, counts, iterationsExecuted.sum(), pixels, frameTiles, nanos);
+    }
+
+    /**
+     * Called by the workers each time a tile is finished.  Events are coalesced so that at most one
+     * imageChanged event is waiting on the GUI thread at any time, and at most one is queued per
+     * CHANGE_INTERVAL_NANOS.  Tiles finished in between are picked up by the next redraw.
+     */
+    private void notifyChanged() {
+        if( listeners.isEmpty() ) return;
+        long now = System.nanoTime();
+        if( now - lastChangeTime < CHANGE_INTERVAL_NANOS ) return;
+        if( !changePending.compareAndSet(false, true) ) return;
+        lastChangeTime = now;
+
+        Platform.runLater( () -> {
+            changePending.set(false);
+            for( FractalGenerationListener listener : listeners ) {
+                listener.imageChanged();
+            }
+        });
     }
 
     private void notifyComplete( double time ) {
-        for( FractalGenerationListener listener : listeners ) {
-            Platform.runLater( () -> listener.imageComplete(time) );
+        GenerationStats stats = lastStats;
+        Platform.runLater( () -> {
+            for( FractalGenerationListener listener : listeners ) {
+                listener.imageComplete(time);
+                listener.generationStats(stats);
+            }
+        });
+    }
+
+    /**
+     * Draws one tile of the current pass and records the time it took.  A tile that a worker
+     * runs while it waits inside another tile (see TileNesting) is counted as a tile of its own,
+     * but its time is subtracted from the outer tile and is not added to the busy time again.
+     * @param tiles the tiles of the pass
+     * @param index the index of the tile
+     * @param worker the index of the worker running it
+     */
+    private void runTile( List<Tile> tiles, int index, int worker ) {
+        if( isCancelled() ) return;
+        TileNesting nesting = tileNesting.get();
+        long outerNested = nesting.nestedNanos;
+        nesting.nestedNanos = 0;
+        nesting.depth++;
+        long start = System.nanoTime();
+        try {
+            Tile tile = tiles.get(index);
+            if( antialiasPass ) {
+                drawAntialiasTile(tile);
+            } else if( passStep > 1 ) {
+                drawCoarseTile(tile);
+            } else if( cache != null ) {
+                drawCachedTile(tile);
+            } else {
+                drawTile(tile);
+            }
+        } finally {
+            nesting.depth--;
+        }
+        long nanos = System.nanoTime() - start;
+        long ownNanos = nanos - nesting.nestedNanos;
+        nesting.nestedNanos = outerNested + nanos;
+
+        if( nesting.depth == 0 ) workerBusy.addAndGet(worker, nanos);
+        workerTiles.incrementAndGet(worker);
+        if( tiles == frameTiles ) tileNanos.addAndGet(index, ownNanos);
+    }
+
+    /**
+     * Fills a rectangle using Mariani-Silver subdivision.  The border of the rectangle is computed
+     * first.  If every border pixel is inside the set (zero iterations), the inside is filled.
+     * Otherwise the inside is split into four rectangles, which are processed as separate tasks
+     * so that idle workers can steal them.  A region of escaped points is never filled, even if
+     * its border has a single count, because the fractional parts of the counts (for smooth
+     * coloring) differ from pixel to pixel.
+     *
+     * Each pixel is iterated at most once, so tracing a tile without any inside regions costs
+     * about as much as drawing it directly (but without the vector kernel).
+     */
+    private class TraceTask extends RecursiveAction {
+        private final int x, y, w, h;
+
+        // Whether the tile is traced because of the previous frame
+        private final boolean hinted;
+
+        private final float[] fraction = new float[1];
+        private long executed;
+
+        TraceTask( int x, int y, int w, int h, boolean hinted ) {
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+            this.hinted = hinted;
+        }
+
+        @Override
+        protected void compute() {
+            if( isCancelled() ) return;
+            if( w <= MIN_TRACE_SIZE || h <= MIN_TRACE_SIZE ) {
+                for( int j = y; j < y + h; j++ ) {
+                    for( int i = x; i < x + w; i++ ) {
+                        drawPixel(i, j);
+                    }
+                }
+                pixelsIterated.add(w * h);
+                iterationsExecuted.add(executed);
+                return;
+            }
+
+            // The border: top and bottom rows, then the left and right columns between them
+            int first = drawPixel(x, y);
+            boolean uniform = first == 0;
+            for( int i = x; i < x + w; i++ ) {
+                if( i > x ) uniform &= drawPixel(i, y) == first;
+                uniform &= drawPixel(i, y + h - 1) == first;
+            }
+            for( int j = y + 1; j < y + h - 1; j++ ) {
+                uniform &= drawPixel(x, j) == first;
+                uniform &= drawPixel(x + w - 1, j) == first;
+            }
+            pixelsIterated.add(2 * w + 2 * (h - 2));
+            iterationsExecuted.add(executed);
+
+            int ix = x + 1, iy = y + 1, iw = w - 2, ih = h - 2;
+            if( uniform ) {
+                image.fill(ix, iy, iw, ih, first);
+                if( hinted ) pixelsFromPreviousFrame.add((long) iw * ih);
+            } else {
+                int hw = iw / 2, hh = ih / 2;
+                TraceTask[] parts = {
+                        new TraceTask(ix, iy, hw, hh, hinted),
+                        new TraceTask(ix + hw, iy, iw - hw, hh, hinted),
+                        new TraceTask(ix, iy + hh, hw, ih - hh, hinted),
+                        new TraceTask(ix + hw, iy + hh, iw - hw, ih - hh, hinted)
+                };
+                if( inForkJoinPool() ) {
+                    invokeAll(parts);
+                } else {
+                    // Other schedulers have no pool to share the parts with
+                    for( TraceTask part : parts ) {
+                        part.compute();
+                    }
+                }
+            }
+        }
+
+        private int drawPixel( int i, int j ) {
+            int iterations = iterate(i, j, maxIterations, fraction);
+            image.writePixel(i, j, iterations, fraction[0]);
+            executed += executed(iterations, maxIterations);
+            return iterations;
         }
     }
 }
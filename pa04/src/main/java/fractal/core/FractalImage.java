@@ -1,31 +1,64 @@
 package fractal.core;
 
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 /**
- * An object to maintain the image.  Internally, it stores a WritableImage object that
- * can be used to display within a GUI or written to a file.
+ * An object to maintain the image.  The worker threads store iteration counts in a plain
+ * int array.  Converting the counts to colors is a separate pass that runs on the GUI thread
+ * and copies finished regions into a WritableImage that can be displayed within a GUI or
+ * written to a file.  Because the counts are kept, the image can be recolored with a
+ * different palette without iterating again.
  *
  * This is the object that we'll share between threads.
- * For this exercise, we won't synchronize threads' access to this object because we'll
- * take care to make sure that only ONE thread will write to a given pixel.  The GUI will ONLY
- * read (to display the image in progress), and we will accept that the GUI may see data that
- * is not completely up to date.
+ * For this exercise, we won't synchronize threads' access to the iteration buffer because
+ * we'll take care to make sure that only ONE thread will write to a given pixel.  A worker
+ * announces a finished tile with markDirty, which publishes the tile's pixels to the GUI
+ * thread through a concurrent queue.
  */
-public class FractalImage {
+public class FractalImage implements IterationBuffer {
 
-    // The image
+    // The image.  It is created by the first update, so that an image that is never displayed
+    // (benchmarks, batch rendering) does not need the JavaFX toolkit.
     private WritableImage image;
 
-    // The number of iterations that corresponds to the end of the color scale
-    private static final int COLOR_SCALE_ITERATIONS = 20;
+    // Whether the whole image must be colored during the next update
+    private volatile boolean fullUpdate = true;
+
+    // The number of iterations of each pixel, row by row
+    private final int[] iterations;
+
+    // The fractional part of the number of iterations of each pixel
+    private final float[] fractions;
+
+    // The anti-aliasing samples of each pixel, or null for pixels without samples
+    private final float[][] samples;
+
+    // Whether any pixel has samples
+    private boolean hasSamples;
+
+    // The colors of each pixel, row by row (only accessed on the GUI thread)
+    private final int[] argb;
+
+    // Tiles that have been written since the last update
+    private final Queue<Tile> dirtyTiles = new ConcurrentLinkedQueue<>();
+
+    private Palette palette = Palette.SUNSET;
 
-    // The color scale
-    private static final int[] COLORS = {0xff85c1c8, 0xff90a1be, 0xff9c8184, 0xffa761aa,
-            0xffaf4980, 0xffb83055, 0xffc0182a, 0xffc80000, 0xffd33300, 0xffde6600,
-            0xffe99900, 0xfff4cc00, 0xffffff00};
+    // Whether the fractional parts of the counts are used
+    private boolean smooth = true;
+
+    // Whether the palette is equalized for the counts in the image
+    private boolean equalized = false;
+
+    // The palette used for coloring: the palette, equalized if requested
+    private Palette colors = palette;
 
     // Image dimensions
     private int width;
@@ -34,46 +67,196 @@ public class FractalImage {
     public FractalImage( int w, int h ) {
         width = w;
         height = h;
-        image = new WritableImage(w, h);
+        iterations = new int[w * h];
+        fractions = new float[w * h];
+        samples = new float[w * h][];
+        argb = new int[w * h];
     }
 
     /**
-     * Write a color to a pixel based on the number of iterations.  This will be called by
-     * multiple worker threads, but we must take care that there is only ONE thread that writes
-     * to a given pixel.
+     * Store the number of iterations of a pixel.  This will be called by multiple worker
+     * threads, but we must take care that there is only ONE thread that writes to a given pixel.
+     * The pixel is not displayed until the tile that contains it is passed to markDirty.
      * @param x the x pixel coordinate
      * @param y the y pixel coordinate
      * @param iterations the number of iterations
+     * @param fraction the fractional part of the number of iterations
+     */
+    @Override
+    public void writePixel( int x, int y, int iterations, float fraction ) {
+        this.iterations[y * width + x] = iterations;
+        this.fractions[y * width + x] = fraction;
+    }
+
+    /**
+     * Store the same number of iterations for every pixel in a rectangle.  The same rules as
+     * writePixel apply.
+     * @param x the x coordinate of the upper left corner
+     * @param y the y coordinate of the upper left corner
+     * @param w the width of the rectangle
+     * @param h the height of the rectangle
+     * @param iterations the number of iterations
+     */
+    @Override
+    public void fill( int x, int y, int w, int h, int iterations ) {
+        for( int row = y; row < y + h; row++ ) {
+            int offset = row * width + x;
+            Arrays.fill(this.iterations, offset, offset + w, iterations);
+            Arrays.fill(fractions, offset, offset + w, 0);
+        }
+    }
+
+    @Override
+    public float getFraction( int x, int y ) {
+        return fractions[y * width + x];
+    }
+
+    @Override
+    public void writeSamples( int x, int y, float[] samples ) {
+        this.samples[y * width + x] = samples;
+        if( samples != null ) hasSamples = true;
+    }
+
+    /**
+     * Returns the number of iterations stored for a pixel.
+     * @param x the x pixel coordinate
+     * @param y the y pixel coordinate
+     * @return the number of iterations
+     */
+    @Override
+    public int getIterations( int x, int y ) {
+        return iterations[y * width + x];
+    }
+
+    /**
+     * Mark a tile as finished so that it is colored and copied to the image during the
+     * next update.  This may be called from any thread.
+     * @param tile the tile
+     */
+    @Override
+    public void markDirty( Tile tile ) {
+        dirtyTiles.add(tile);
+    }
+
+    /**
+     * Color all tiles marked since the last update and copy them to the image.  This should
+     * ONLY be called on the GUI event dispatch thread.
      */
-    public void writePixel( int x, int y, int iterations ) {
+    public void update() {
+        if( image == null ) {
+            image = new WritableImage(width, height);
+        }
         PixelWriter writer = image.getPixelWriter();
-        int color;
-        if( iterations == 0 ) color = 0xff000000;
-        else {
-            double f = ((double) iterations / COLOR_SCALE_ITERATIONS) * COLORS.length;
-            int index = (int)f;
-            if( index >= COLORS.length ) index = COLORS.length - 1;
-            color = COLORS[ index ];
+        if( fullUpdate ) {
+            // Reset the flag first, so that a clear() during the upload is not lost
+            fullUpdate = false;
+            dirtyTiles.clear();
+            uploadRegion(writer, 0, 0, width, height);
+        }
+        Tile tile;
+        while( (tile = dirtyTiles.poll()) != null ) {
+            if( tile.getRowStride() == 1 ) {
+                uploadRegion(writer, tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight());
+            } else {
+                for( int r = 0; r < tile.getHeight(); r++ ) {
+                    uploadRegion(writer, tile.getX(), tile.getRow(r), tile.getWidth(), 1);
+                }
+            }
         }
-        writer.setArgb(x, y, color);
     }
 
     /**
-     * Draw the image to the provided GraphicsContext context.  This should ONLY be called on the
-     * GUI event dispatch thread.
+     * Change the coloring and recolor the whole image from the stored iteration counts.  This
+     * should ONLY be called on the GUI event dispatch thread, and not while workers are running
+     * if the palette is equalized.
+     * @param palette the palette
+     * @param smooth true to use the fractional parts of the counts (smooth coloring), false for
+     *               bands of color
+     * @param equalized true to equalize the palette for the counts in the image
+     */
+    public void setColoring( Palette palette, boolean smooth, boolean equalized ) {
+        this.palette = palette;
+        this.smooth = smooth;
+        this.equalized = equalized;
+        recolor();
+    }
+
+    /**
+     * Change the palette and recolor the whole image.  See setColoring.
+     * @param palette the new palette
+     */
+    public void setPalette( Palette palette ) {
+        setColoring(palette, smooth, equalized);
+    }
+
+    public Palette getPalette() { return palette; }
+    public boolean isSmooth() { return smooth; }
+    public boolean isEqualized() { return equalized; }
+
+    /**
+     * Recolor the whole image from the stored iteration counts.  An equalized palette is
+     * equalized again for the current counts, which takes one parallel pass over the counts.
+     * This should ONLY be called on the GUI event dispatch thread, and not while workers are
+     * running.
+     */
+    public void recolor() {
+        colors = equalized ? palette.equalize(Histogram.compute(iterations, 0, iterations.length)) : palette;
+        fullUpdate = true;
+        update();
+    }
+
+    private void uploadRegion( PixelWriter writer, int x, int y, int w, int h ) {
+        float[] f = smooth ? fractions : null;
+        for( int row = y; row < y + h; row++ ) {
+            int offset = row * width + x;
+            colors.colorize(iterations, f, offset, argb, offset, w);
+            if( hasSamples ) {
+                for( int i = offset; i < offset + w; i++ ) {
+                    if( samples[i] != null ) argb[i] = colors.averageColor(samples[i], smooth);
+                }
+            }
+        }
+        writer.setPixels(x, y, w, h, PixelFormat.getIntArgbInstance(), argb, y * width + x, width);
+    }
+
+    /**
+     * Draw the image to the provided GraphicsContext context.  Any tiles finished since the
+     * last call are colored first.  This should ONLY be called on the GUI event dispatch thread.
      * @param g a GraphicsContext object
      */
     public void draw(GraphicsContext g) {
-        g.drawImage(image, 0, 0);
+        draw(g, 0, 0);
     }
 
     /**
-     * Clear image to black.
+     * Draw the image to the provided GraphicsContext context with its upper left corner at the
+     * given position.  This should ONLY be called on the GUI event dispatch thread.
+     * @param g a GraphicsContext object
+     * @param x the x position
+     * @param y the y position
      */
+    public void draw(GraphicsContext g, double x, double y) {
+        update();
+        g.drawImage(image, x, y);
+    }
+
+    /**
+     * Clear image to black.  This may be called from any thread, but not while workers are
+     * running.  The image is redrawn during the next update.
+     */
+    @Override
     public void clear() {
-        image = new WritableImage(width, height);
+        dirtyTiles.clear();
+        Arrays.fill(iterations, 0);
+        Arrays.fill(fractions, 0);
+        Arrays.fill(samples, null);
+        hasSamples = false;
+        fullUpdate = true;
     }
 
+    @Override
     public int getWidth() { return width; }
+
+    @Override
     public int getHeight() { return height; }
 }
@@ -0,0 +1,49 @@
+package fractal.core;
+
+/**
+ * An escape-time formula: the function that is iterated for each point of the complex plane,
+ * and the count of iterations until the orbit leaves the circle of radius 2.
+ *
+ * Each implementation is a final class with its own iteration loop, so the loop contains no
+ * virtual calls and the JIT can inline and unroll it.  The generator calls the kernel once per
+ * pixel; everything else (the tiles, the worker pool, the tile cache, progressive passes,
+ * anti-aliasing and coloring) is shared by all kernels.
+ *
+ * Kernels are immutable.  Kernels that compute the same counts must be equal, because the tile
+ * cache uses the kernel as part of the key of a tile.
+ */
+public interface FractalKernel {
+
+    /**
+     * Iterate the point c = (cx, cy).
+     * @param cx the real part of the point
+     * @param cy the imaginary part of the point
+     * @param maxIterations the maximum number of iterations
+     * @param fraction if not null, element 0 receives the fractional part of the count (see
+     *                 FractalGenerator.smoothFraction), or zero if the point did not escape
+     * @return the number of iterations required to reach a magnitude of 2.0 or more, or zero if
+     *         we reached the maximum number of iterations
+     */
+    int iterate( double cx, double cy, int maxIterations, float[] fraction );
+
+    /**
+     * Same as iterate, but recognizes some points that never escape early (interior checking).
+     * The result must be the same as that of iterate.  The default does no checking.
+     */
+    default int iterateChecked( double cx, double cy, int maxIterations, float[] fraction ) {
+        return iterate(cx, cy, maxIterations, fraction);
+    }
+
+    /**
+     * Returns whether the points that escape form a single connected region.  Then a closed
+     * curve of points that do not escape encloses only points that do not escape, which is
+     * what boundary tracing relies on.  This holds for the polynomial maps.  The default is
+     * false, and boundary tracing falls back to computing every pixel.
+     */
+    default boolean hasConnectedExterior() { return false; }
+
+    /**
+     * @return the region of the complex plane that shows the whole fractal
+     */
+    Viewport getDefaultViewport();
+}
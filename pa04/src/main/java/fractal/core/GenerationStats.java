@@ -0,0 +1,153 @@
+package fractal.core;
+
+import java.util.List;
+
+/**
+ * Measurements of one generation: which scheduler ran the tiles, the precision of the
+ * arithmetic, how long each worker thread was busy drawing tiles, how many tiles it drew, and
+ * how long each tile of the full resolution pass took.  The time of a tile includes its
+ * anti-aliasing pass but not other tiles run while it waited, and subtasks of boundary tracing
+ * that are stolen by other workers are counted for the worker that started the tile.
+ * Instances are immutable.
+ */
+public final class GenerationStats {
+
+    private final TileScheduler scheduler;
+    private final Precision precision;
+    private final long floatPixels;
+    private final long floatPixelsRedone;
+    private final double elapsedTime;
+    private final long[] busyNanos;
+    private final int[] tileCounts;
+    private final long iterations;
+    private final long pixels;
+    private final List<Tile> tiles;
+    private final long[] tileNanos;
+
+    GenerationStats( TileScheduler scheduler, Precision precision, long floatPixels,
+                     long floatPixelsRedone, double elapsedTime, long[] busyNanos, int[] tileCounts,
+                     long iterations, long pixels, List<Tile> tiles, long[] tileNanos ) {
+        this.scheduler = scheduler;
+        this.precision = precision;
+        this.floatPixels = floatPixels;
+        this.floatPixelsRedone = floatPixelsRedone;
+        this.elapsedTime = elapsedTime;
+        this.busyNanos = busyNanos;
+        this.tileCounts = tileCounts;
+        this.iterations = iterations;
+        this.pixels = pixels;
+        this.tiles = List.copyOf(tiles);
+        this.tileNanos = tileNanos;
+    }
+
+    /**
+     * @return the scheduler that ran the tiles
+     */
+    public TileScheduler getScheduler() { return scheduler; }
+
+    public Precision getPrecision() { return precision; }
+
+    /**
+     * @return the share of the pixels iterated in float lanes that could not be decided in
+     *         float and were iterated again in double, from 0 to 1
+     */
+    public double getFloatRedoneRatio() {
+        return floatPixels == 0 ? 0.0 : (double) floatPixelsRedone / floatPixels;
+    }
+
+    /**
+     * @return the elapsed (wall clock) time of the generation in seconds
+     */
+    public double getElapsedTime() { return elapsedTime; }
+
+    public int getWorkerCount() { return busyNanos.length; }
+
+    /**
+     * @return the time in seconds that a worker spent drawing tiles
+     */
+    public double getBusyTime( int worker ) {
+        return busyNanos[worker] / 1e9;
+    }
+
+    /**
+     * @return the time in seconds that a worker spent without a tile to draw.  This is never
+     *         negative: the busy time is the union of the intervals the worker spent in tiles,
+     *         which lie within the generation, and a tile run inside another is counted once.
+     */
+    public double getIdleTime( int worker ) {
+        return elapsedTime - getBusyTime(worker);
+    }
+
+    /**
+     * @return the number of tiles a worker drew, over all passes
+     */
+    public int getTileCount( int worker ) {
+        return tileCounts[worker];
+    }
+
+    /**
+     * @return the number of iterations of all computed pixels and samples.  Points that did not
+     *         escape are counted at the iteration limit, even if interior checking stopped them
+     *         early, so with interior checking this is an upper bound.
+     */
+    public long getIterations() { return iterations; }
+
+    /**
+     * @return the pixels of the frame per second of elapsed time
+     */
+    public double getPixelsPerSecond() {
+        return elapsedTime > 0 ? pixels / elapsedTime : 0.0;
+    }
+
+    /**
+     * @return the busy time of the slowest worker divided by the mean busy time.  1.0 is a
+     *         perfect balance; with n workers the worst is n.
+     */
+    public double getImbalance() {
+        long max = 0, total = 0;
+        for( long nanos : busyNanos ) {
+            max = Math.max(max, nanos);
+            total += nanos;
+        }
+        return total == 0 ? 1.0 : (double) max * busyNanos.length / total;
+    }
+
+    /**
+     * @return the tiles of the full resolution pass
+     */
+    public List<Tile> getTiles() { return tiles; }
+
+    /**
+     * @param tile the index of the tile in getTiles()
+     * @return the time in nanoseconds spent on a tile of the full resolution pass
+     */
+    public long getTileNanos( int tile ) {
+        return tileNanos[tile];
+    }
+
+    /**
+     * @return a report with one line for the whole generation and one for each worker
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s, %s: %.3f s, %.2f Mpixels/s, %,d iterations, imbalance %.2f%n",
+                scheduler, describePrecision(), elapsedTime, getPixelsPerSecond() / 1e6, iterations,
+                getImbalance()));
+        for( int w = 0; w < busyNanos.length; w++ ) {
+            sb.append(String.format("worker %d: busy %.3f s, idle %.3f s, %d tiles%n",
+                    w, getBusyTime(w), getIdleTime(w), tileCounts[w]));
+        }
+        return sb.toString();
+    }
+
+    private String describePrecision() {
+        if( precision != Precision.FLOAT ) return precision.toString();
+        return String.format("%s (%.1f%% redone in double)", precision, getFloatRedoneRatio() * 100);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, %s, %.2f Mpixels/s, imbalance %.2f",
+                scheduler, precision, getPixelsPerSecond() / 1e6, getImbalance());
+    }
+}
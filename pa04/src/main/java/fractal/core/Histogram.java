@@ -0,0 +1,70 @@
+package fractal.core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts how many pixels of an iteration buffer have each iteration count, in one parallel
+ * pass.  The buffer is split into chunks that are counted by the workers of the common
+ * fork/join pool, each into its own table, and the tables are added up as the tasks join.
+ */
+public final class Histogram {
+
+    // Chunks of at most this many pixels are counted by a single task
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private Histogram() { }
+
+    /**
+     * Count the iteration counts of a range of a buffer.
+     * @param iterations the iteration counts
+     * @param offset the index of the first count
+     * @param count the number of counts
+     * @return the number of pixels with each count, indexed by count.  The length is one more
+     *         than the largest count.
+     */
+    public static int[] compute( int[] iterations, int offset, int count ) {
+        return ForkJoinPool.commonPool().invoke(new CountTask(iterations, offset, offset + count));
+    }
+
+    private static class CountTask extends RecursiveTask<int[]> {
+        private final int[] iterations;
+        private final int from, to;
+
+        CountTask( int[] iterations, int from, int to ) {
+            this.iterations = iterations;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            if( to - from <= CHUNK_SIZE ) {
+                int max = 0;
+                for( int i = from; i < to; i++ ) {
+                    max = Math.max(max, iterations[i]);
+                }
+                int[] histogram = new int[max + 1];
+                for( int i = from; i < to; i++ ) {
+                    histogram[iterations[i]]++;
+                }
+                return histogram;
+            }
+
+            int mid = (from + to) >>> 1;
+            CountTask right = new CountTask(iterations, mid, to);
+            right.fork();
+            int[] a = new CountTask(iterations, from, mid).compute();
+            int[] b = right.join();
+            if( a.length < b.length ) {
+                int[] t = a;
+                a = b;
+                b = t;
+            }
+            for( int n = 0; n < b.length; n++ ) {
+                a[n] += b[n];
+            }
+            return a;
+        }
+    }
+}
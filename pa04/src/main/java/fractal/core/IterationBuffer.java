@@ -0,0 +1,92 @@
+package fractal.core;
+
+/**
+ * Storage for the iteration counts produced by the generator.  The width and height are those
+ * of the whole frame; an implementation may hold only part of it, in which case the generator
+ * must only be asked to render the part that is held.
+ *
+ * As with FractalImage, writes are not synchronized: the generator makes sure that only ONE
+ * thread writes to a given pixel, and announces each finished tile with markDirty.
+ */
+public interface IterationBuffer {
+
+    /**
+     * @return the width of the frame in pixels
+     */
+    int getWidth();
+
+    /**
+     * @return the height of the frame in pixels
+     */
+    int getHeight();
+
+    /**
+     * Store the number of iterations of a pixel, without a fractional part.
+     * @param x the x pixel coordinate
+     * @param y the y pixel coordinate
+     * @param iterations the number of iterations
+     */
+    default void writePixel( int x, int y, int iterations ) {
+        writePixel(x, y, iterations, 0);
+    }
+
+    /**
+     * Store the number of iterations of a pixel and its fractional part, which is used for
+     * smooth coloring.
+     * @param x the x pixel coordinate
+     * @param y the y pixel coordinate
+     * @param iterations the number of iterations
+     * @param fraction the fractional part, from 0 up to 1
+     */
+    void writePixel( int x, int y, int iterations, float fraction );
+
+    /**
+     * Store the same number of iterations for every pixel in a rectangle.  The fractional parts
+     * are set to zero.
+     * @param x the x coordinate of the upper left corner
+     * @param y the y coordinate of the upper left corner
+     * @param w the width of the rectangle
+     * @param h the height of the rectangle
+     * @param iterations the number of iterations
+     */
+    void fill( int x, int y, int w, int h, int iterations );
+
+    /**
+     * Returns the number of iterations stored for a pixel.
+     * @param x the x pixel coordinate
+     * @param y the y pixel coordinate
+     * @return the number of iterations
+     */
+    int getIterations( int x, int y );
+
+    /**
+     * Returns the fractional part of the number of iterations stored for a pixel.
+     * @param x the x pixel coordinate
+     * @param y the y pixel coordinate
+     * @return the fractional part
+     */
+    float getFraction( int x, int y );
+
+    /**
+     * Store extra samples of a pixel, taken at several points within the pixel (anti-aliasing).
+     * A pixel with samples is colored with the average color of its samples instead of the
+     * color of its own count.  The same rules as writePixel apply.
+     * @param x the x pixel coordinate
+     * @param y the y pixel coordinate
+     * @param samples the iteration counts of the samples, including their fractional parts, or
+     *                null to remove the samples
+     */
+    void writeSamples( int x, int y, float[] samples );
+
+    /**
+     * Called by the generator (from any thread) when all pixels of a tile have been written.
+     * @param tile the tile
+     */
+    void markDirty( Tile tile );
+
+    /**
+     * Set every pixel to zero iterations and remove all samples.  This must not be called while
+     * workers are running.
+     */
+    void clear();
+}
@@ -0,0 +1,102 @@
+package fractal.core;
+
+/**
+ * The Julia set of a parameter k: z(0) = c, z(n+1) = z(n)^2 + k, for the point c of each
+ * pixel.  The set is connected when k lies in the Mandelbrot set, and a cloud of separate
+ * points (Fatou dust) otherwise.
+ *
+ * z(0) counts as the first iteration, as z(1) = c does for the Mandelbrot set, so a point
+ * that starts outside the circle of radius 2 has a count of 1 rather than 0, which would
+ * mean that it does not escape.
+ */
+public final class JuliaKernel implements FractalKernel {
+
+    private static final Viewport DEFAULT_VIEWPORT = new Viewport(0.0, 0.0, 3.0);
+
+    // The parameter
+    private final double kx, ky;
+
+    /**
+     * @param kx the real part of the parameter
+     * @param ky the imaginary part of the parameter
+     */
+    public JuliaKernel( double kx, double ky ) {
+        this.kx = kx;
+        this.ky = ky;
+    }
+
+    public double getParameterX() { return kx; }
+    public double getParameterY() { return ky; }
+
+    @Override
+    public int iterate( double cx, double cy, int maxIterations, float[] fraction ) {
+        double kx = this.kx, ky = this.ky;
+        double zx = cx, zy = cy;
+        double zlen2 = zx * zx + zy * zy;
+        int iterations = 1;
+        while(iterations < maxIterations && zlen2 <= 4.0 ) {
+            double zxNext = zx * zx - zy * zy + kx;
+            double zyNext = 2.0 * zx * zy + ky;
+            zx = zxNext;
+            zy = zyNext;
+            zlen2 = zx * zx + zy * zy;
+            iterations++;
+        }
+        return FractalGenerator.escaped(iterations, zx, zy, kx, ky, fraction);
+    }
+
+    /**
+     * Orbits that return exactly to an earlier value are stopped early (Brent-style
+     * periodicity checking, as in MandelbrotKernel).  This pays off for the large interiors of
+     * connected Julia sets.
+     */
+    @Override
+    public int iterateChecked( double cx, double cy, int maxIterations, float[] fraction ) {
+        double kx = this.kx, ky = this.ky;
+        double zx = cx, zy = cy;
+        double zlen2 = zx * zx + zy * zy;
+        double savedX = zx, savedY = zy;
+        int period = 1, steps = 0;
+        int iterations = 1;
+        while(iterations < maxIterations && zlen2 <= 4.0 ) {
+            double zxNext = zx * zx - zy * zy + kx;
+            double zyNext = 2.0 * zx * zy + ky;
+            zx = zxNext;
+            zy = zyNext;
+            zlen2 = zx * zx + zy * zy;
+            iterations++;
+
+            if( zx == savedX && zy == savedY ) return FractalGenerator.escaped(0, 0.0, fraction);
+            if( ++steps == period ) {
+                savedX = zx;
+                savedY = zy;
+                steps = 0;
+                period <<= 1;
+            }
+        }
+        return FractalGenerator.escaped(iterations, zx, zy, kx, ky, fraction);
+    }
+
+    @Override
+    public boolean hasConnectedExterior() { return true; }
+
+    @Override
+    public Viewport getDefaultViewport() { return DEFAULT_VIEWPORT; }
+
+    @Override
+    public boolean equals( Object other ) {
+        if( !(other instanceof JuliaKernel) ) return false;
+        JuliaKernel k = (JuliaKernel) other;
+        return Double.compare(k.kx, kx) == 0 && Double.compare(k.ky, ky) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(kx) * 31 + Double.hashCode(ky);
+    }
+
+    @Override
+    public String toString() {
+        return "Julia " + kx + (ky < 0 ? " - " : " + ") + Math.abs(ky) + "i";
+    }
+}
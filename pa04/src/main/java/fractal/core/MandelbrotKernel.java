@@ -0,0 +1,97 @@
+package fractal.core;
+
+/**
+ * The Mandelbrot set: z(0) = 0, z(n+1) = z(n)^2 + c, for the point c of each pixel.
+ *
+ * This is the only kernel supported by the vector kernel and by perturbation (deep zoom)
+ * iteration.  All instances are equal.
+ */
+public final class MandelbrotKernel implements FractalKernel {
+
+    @Override
+    public int iterate( double cx, double cy, int maxIterations, float[] fraction ) {
+        // Perform the iterations starting with (0,0)
+        double zx = 0.0, zy = 0.0;
+        double zlen2 = 0.0;
+        int iterations = 0;
+        while(iterations < maxIterations && zlen2 <= 4.0 ) {
+            double zxNext = zx * zx - zy * zy + cx;
+            double zyNext = 2.0 * zx * zy + cy;
+            zx = zxNext;
+            zy = zyNext;
+            zlen2 = zx * zx + zy * zy;
+            iterations++;
+        }
+        return FractalGenerator.escaped(iterations, zx, zy, cx, cy, fraction);
+    }
+
+    /**
+     * Points inside the main cardioid or the period-2 bulb are recognized without iterating,
+     * and orbits that return exactly to an earlier value are stopped early.
+     */
+    @Override
+    public int iterateChecked( double cx, double cy, int maxIterations, float[] fraction ) {
+        if( inCardioidOrBulb(cx, cy) ) return FractalGenerator.escaped(0, 0.0, fraction);
+
+        // The same loop as iterate, with Brent-style periodicity checking: the orbit is saved
+        // at iterations that are powers of two and compared with each following value.  If the
+        // orbit lands exactly on the saved value it is periodic, and will never escape.  Because
+        // the comparison is exact, the result is always the same as the plain loop.
+        double zx = 0.0, zy = 0.0;
+        double zlen2 = 0.0;
+        double savedX = 0.0, savedY = 0.0;
+        int period = 1, steps = 0;
+        int iterations = 0;
+        while(iterations < maxIterations && zlen2 <= 4.0 ) {
+            double zxNext = zx * zx - zy * zy + cx;
+            double zyNext = 2.0 * zx * zy + cy;
+            zx = zxNext;
+            zy = zyNext;
+            zlen2 = zx * zx + zy * zy;
+            iterations++;
+
+            if( zx == savedX && zy == savedY ) return FractalGenerator.escaped(0, 0.0, fraction);
+            if( ++steps == period ) {
+                savedX = zx;
+                savedY = zy;
+                steps = 0;
+                period <<= 1;
+            }
+        }
+        return FractalGenerator.escaped(iterations, zx, zy, cx, cy, fraction);
+    }
+
+    /**
+     * Returns whether c lies strictly inside the main cardioid or the period-2 bulb of the
+     * Mandelbrot set.  Such points never escape, so they can be skipped entirely.
+     */
+    private static boolean inCardioidOrBulb( double cx, double cy ) {
+        double y2 = cy * cy;
+        double xq = cx - 0.25;
+        double q = xq * xq + y2;
+        if( q * (q + xq) < 0.25 * y2 ) return true;
+        double xb = cx + 1.0;
+        return xb * xb + y2 < 0.0625;
+    }
+
+    @Override
+    public boolean hasConnectedExterior() { return true; }
+
+    @Override
+    public Viewport getDefaultViewport() { return Viewport.DEFAULT; }
+
+    @Override
+    public boolean equals( Object other ) {
+        return other instanceof MandelbrotKernel;
+    }
+
+    @Override
+    public int hashCode() {
+        return MandelbrotKernel.class.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Mandelbrot";
+    }
+}
@@ -0,0 +1,239 @@
+package fractal.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An IterationBuffer kept in a memory-mapped file instead of on the heap, for images far too
+ * large for memory (100k x 100k pixels take 80 GB).  The operating system pages the parts that
+ * are in use in and out, so the heap only holds this object.
+ *
+ * The file holds a header followed by the frame in chunks of whole rows.  A single
+ * MappedByteBuffer is limited to 2 GB, so each chunk of at most MAX_CHUNK_BYTES is mapped
+ * separately, when it is first used.  A chunk holds the iteration counts of its rows followed
+ * by their fractional parts, little-endian.  A new file is sparse and reads as all zeros.
+ *
+ * Anti-aliasing samples are not stored; writeSamples does nothing.  As with the other buffers,
+ * the generator's workers may write different pixels at the same time.  Mappings are released
+ * when they are garbage collected, after close.
+ */
+public final class MappedIterationStore implements IterationBuffer, Closeable {
+
+    private static final long MAGIC = 0x4652414354495453L;   // "FRACTITS"
+    private static final int VERSION = 1;
+
+    // The size of the header, one page so that the chunks are page aligned
+    private static final int HEADER_SIZE = 4096;
+
+    // The maximum size of a mapped chunk
+    static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    // Bytes per pixel: a count and a fraction
+    private static final int PIXEL_BYTES = 8;
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private final int width, height;
+
+    // The number of rows in each chunk (the last one may have fewer)
+    private final int chunkRows;
+
+    // The chunks that have been mapped so far
+    private final AtomicReferenceArray<MappedByteBuffer> chunks;
+
+    private MappedIterationStore( FileChannel channel, boolean writable, int width, int height ) {
+        this.channel = channel;
+        this.writable = writable;
+        this.width = width;
+        this.height = height;
+        this.chunkRows = (int) Math.max(1, Math.min(height, MAX_CHUNK_BYTES / ((long) PIXEL_BYTES * width)));
+        this.chunks = new AtomicReferenceArray<>((height + chunkRows - 1) / chunkRows);
+    }
+
+    /**
+     * Create a store, replacing any existing file.  All pixels start at zero iterations.
+     * @param file the file
+     * @param width the width of the frame
+     * @param height the height of the frame
+     */
+    public static MappedIterationStore create( Path file, int width, int height ) throws IOException {
+        if( width <= 0 || height <= 0 || (long) PIXEL_BYTES * width > MAX_CHUNK_BYTES ) {
+            throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC).putInt(VERSION).putInt(width).putInt(height);
+            header.clear();
+            channel.write(header, 0);
+
+            // Extend the file to its full size without writing the data, which leaves it sparse
+            long size = HEADER_SIZE + (long) PIXEL_BYTES * width * height;
+            channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+        } catch( IOException e ) {
+            channel.close();
+            throw e;
+        }
+        return new MappedIterationStore(channel, true, width, height);
+    }
+
+    /**
+     * Open an existing store.
+     * @param file the file
+     * @param writable whether pixels may be written
+     */
+    public static MappedIterationStore open( Path file, boolean writable ) throws IOException {
+        FileChannel channel = writable
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            header.flip();
+            if( header.remaining() < 20 || header.getLong() != MAGIC ) throw new IOException("Not an iteration store: " + file);
+            int version = header.getInt();
+            if( version != VERSION ) throw new IOException("Unsupported store version " + version + ": " + file);
+            int width = header.getInt(), height = header.getInt();
+            if( width <= 0 || height <= 0 || (long) PIXEL_BYTES * width > MAX_CHUNK_BYTES ) {
+                throw new IOException("Not an iteration store: " + file);
+            }
+            if( channel.size() < HEADER_SIZE + (long) PIXEL_BYTES * width * height ) {
+                throw new IOException("Truncated iteration store: " + file);
+            }
+            return new MappedIterationStore(channel, writable, width, height);
+        } catch( IOException e ) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the chunk that holds a row, mapping it if it is not mapped yet.  Two threads may
+     * map the same chunk at once; one mapping is kept and the other is dropped.
+     */
+    private MappedByteBuffer chunk( int y ) {
+        int k = y / chunkRows;
+        MappedByteBuffer chunk = chunks.get(k);
+        if( chunk != null ) return chunk;
+        try {
+            int rows = Math.min(chunkRows, height - k * chunkRows);
+            long offset = HEADER_SIZE + (long) PIXEL_BYTES * width * k * chunkRows;
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            chunk = channel.map(mode, offset, (long) PIXEL_BYTES * width * rows);
+        } catch( IOException e ) {
+            throw new IllegalStateException("Unable to map rows of the iteration store", e);
+        }
+        chunk.order(ByteOrder.LITTLE_ENDIAN);
+        return chunks.compareAndSet(k, null, chunk) ? chunk : chunks.get(k);
+    }
+
+    // The byte offset of a pixel's count within its chunk
+    private int countOffset( int x, int y ) {
+        return ((y % chunkRows) * width + x) * 4;
+    }
+
+    // The byte offset of a pixel's fraction within its chunk
+    private int fractionOffset( MappedByteBuffer chunk, int x, int y ) {
+        return chunk.capacity() / 2 + countOffset(x, y);
+    }
+
+    @Override
+    public void writePixel( int x, int y, int iterations, float fraction ) {
+        MappedByteBuffer chunk = chunk(y);
+        chunk.putInt(countOffset(x, y), iterations);
+        chunk.putFloat(fractionOffset(chunk, x, y), fraction);
+    }
+
+    @Override
+    public void fill( int x, int y, int w, int h, int iterations ) {
+        for( int j = y; j < y + h; j++ ) {
+            for( int i = x; i < x + w; i++ ) {
+                writePixel(i, j, iterations, 0);
+            }
+        }
+    }
+
+    @Override
+    public int getIterations( int x, int y ) {
+        return chunk(y).getInt(countOffset(x, y));
+    }
+
+    @Override
+    public float getFraction( int x, int y ) {
+        MappedByteBuffer chunk = chunk(y);
+        return chunk.getFloat(fractionOffset(chunk, x, y));
+    }
+
+    /**
+     * Read every step-th pixel of part of a row.
+     * @param x the first column
+     * @param y the row
+     * @param step the distance between the columns read
+     * @param count the number of pixels to read
+     * @param iterations receives the counts, starting at offset
+     * @param fractions receives the fractional parts, starting at offset
+     * @param offset the first index to store
+     */
+    public void readRow( int x, int y, int step, int count, int[] iterations, float[] fractions, int offset ) {
+        MappedByteBuffer chunk = chunk(y);
+        int counts = countOffset(x, y), half = chunk.capacity() / 2;
+        for( int i = 0; i < count; i++ ) {
+            iterations[offset + i] = chunk.getInt(counts + 4 * step * i);
+            fractions[offset + i] = chunk.getFloat(half + counts + 4 * step * i);
+        }
+    }
+
+    @Override
+    public void writeSamples( int x, int y, float[] samples ) { }
+
+    @Override
+    public void markDirty( Tile tile ) { }
+
+    /**
+     * Set every pixel to zero iterations.  This writes the whole file, so it is slow for large
+     * frames; a new store is already clear.
+     */
+    @Override
+    public void clear() {
+        byte[] zeros = new byte[1 << 16];
+        for( int y = 0; y < height; y += chunkRows ) {
+            MappedByteBuffer chunk = chunk(y);
+            for( int p = 0; p < chunk.capacity(); p += zeros.length ) {
+                chunk.put(p, zeros, 0, Math.min(zeros.length, chunk.capacity() - p));
+            }
+        }
+    }
+
+    /**
+     * Write the changed pixels to the file.
+     */
+    public void flush() {
+        for( int k = 0; k < chunks.length(); k++ ) {
+            MappedByteBuffer chunk = chunks.get(k);
+            if( chunk != null && writable ) chunk.force();
+        }
+    }
+
+    /**
+     * Flush the store and close the file.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    @Override
+    public int getWidth() { return width; }
+
+    @Override
+    public int getHeight() { return height; }
+}
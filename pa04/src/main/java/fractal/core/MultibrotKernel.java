@@ -0,0 +1,134 @@
+package fractal.core;
+
+/**
+ * The Multibrot set of an integer power n: z(0) = 0, z(n+1) = z(n)^n + c.  Power 2 is the
+ * Mandelbrot set (use MandelbrotKernel for that, which is faster); power n has n - 1-fold
+ * rotational symmetry.
+ */
+public final class MultibrotKernel implements FractalKernel {
+
+    private static final Viewport DEFAULT_VIEWPORT = new Viewport(0.0, 0.0, 3.0);
+
+    private final int power;
+
+    // The natural logarithm of the power, for the smooth count
+    private final double logPower;
+
+    /**
+     * @param power the power, 2 or more
+     */
+    public MultibrotKernel( int power ) {
+        if( power < 2 ) {
+            throw new IllegalArgumentException("Power must be at least 2: " + power);
+        }
+        this.power = power;
+        this.logPower = Math.log(power);
+    }
+
+    public int getPower() { return power; }
+
+    @Override
+    public int iterate( double cx, double cy, int maxIterations, float[] fraction ) {
+        int power = this.power;
+        double zx = 0.0, zy = 0.0;
+        double zlen2 = 0.0;
+        int iterations = 0;
+
+        // The common powers have loops of their own with z^power written out, which saves the
+        // inner loop and some multiplications
+        switch( power ) {
+            case 3:
+                while(iterations < maxIterations && zlen2 <= 4.0 ) {
+                    double x2 = zx * zx, y2 = zy * zy;
+                    double zxNext = zx * (x2 - 3.0 * y2) + cx;
+                    zy = zy * (3.0 * x2 - y2) + cy;
+                    zx = zxNext;
+                    zlen2 = zx * zx + zy * zy;
+                    iterations++;
+                }
+                break;
+            case 4:
+                while(iterations < maxIterations && zlen2 <= 4.0 ) {
+                    // (z^2)^2
+                    double sx = zx * zx - zy * zy, sy = 2.0 * zx * zy;
+                    zx = sx * sx - sy * sy + cx;
+                    zy = 2.0 * sx * sy + cy;
+                    zlen2 = zx * zx + zy * zy;
+                    iterations++;
+                }
+                break;
+            case 5:
+                while(iterations < maxIterations && zlen2 <= 4.0 ) {
+                    // (z^2)^2 z
+                    double sx = zx * zx - zy * zy, sy = 2.0 * zx * zy;
+                    double qx = sx * sx - sy * sy, qy = 2.0 * sx * sy;
+                    double zxNext = qx * zx - qy * zy + cx;
+                    zy = qx * zy + qy * zx + cy;
+                    zx = zxNext;
+                    zlen2 = zx * zx + zy * zy;
+                    iterations++;
+                }
+                break;
+            default:
+                while(iterations < maxIterations && zlen2 <= 4.0 ) {
+                    // z^power by repeated multiplication, which is faster and more accurate than
+                    // the polar form for small powers
+                    double px = zx, py = zy;
+                    for( int k = 1; k < power; k++ ) {
+                        double pxNext = px * zx - py * zy;
+                        py = px * zy + py * zx;
+                        px = pxNext;
+                    }
+                    zx = px + cx;
+                    zy = py + cy;
+                    zlen2 = zx * zx + zy * zy;
+                    iterations++;
+                }
+                break;
+        }
+        if( zlen2 <= 4.0 ) return FractalGenerator.escaped(0, 0.0, fraction);
+
+        // Continue the orbit for the smooth count (see FractalGenerator.smoothFraction), as
+        // long as |z| stays finite: with a large power, a step past |z| = 256 can overflow
+        if( fraction != null ) {
+            int extra = 0;
+            while( zlen2 <= FractalGenerator.SMOOTH_RADIUS2 ) {
+                double px = zx, py = zy;
+                for( int k = 1; k < power; k++ ) {
+                    double pxNext = px * zx - py * zy;
+                    py = px * zy + py * zx;
+                    px = pxNext;
+                }
+                double len2 = (px + cx) * (px + cx) + (py + cy) * (py + cy);
+                if( Double.isInfinite(len2) ) break;
+                zx = px + cx;
+                zy = py + cy;
+                zlen2 = len2;
+                extra++;
+            }
+            fraction[0] = FractalGenerator.smoothFraction(extra, zlen2, logPower);
+        }
+        return iterations;
+    }
+
+    @Override
+    public boolean hasConnectedExterior() { return true; }
+
+    @Override
+    public Viewport getDefaultViewport() { return DEFAULT_VIEWPORT; }
+
+    @Override
+    public boolean equals( Object other ) {
+        return other instanceof MultibrotKernel && ((MultibrotKernel) other).power == power;
+    }
+
+    @Override
+    public int hashCode() {
+        return power;
+    }
+
+    @Override
+    public String toString() {
+        return "Multibrot z^" + power;
+    }
+}
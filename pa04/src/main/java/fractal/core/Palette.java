@@ -0,0 +1,242 @@
+package fractal.core;
+
+import java.util.List;
+
+/**
+ * A color scale that maps iteration counts to ARGB colors.  Points that never escape
+ * (zero iterations) are always black.
+ *
+ * The colors are spread evenly over the first scaleIterations iterations and blended into a
+ * lookup table, so that converting a count is a multiplication and a table read.  Counts may
+ * have a fractional part (smooth coloring, see FractalGenerator.smoothFraction), which selects
+ * a position between the table entries of two counts.  A palette can also be equalized for a
+ * particular image, so that each color covers about the same number of pixels.
+ */
+public final class Palette {
+
+    private static final int BLACK = 0xff000000;
+
+    /** The default number of entries in the lookup table. */
+    public static final int DEFAULT_TABLE_SIZE = 1024;
+
+    public static final Palette SUNSET = new Palette("Sunset", 20,
+            0xff85c1c8, 0xff90a1be, 0xff9c8184, 0xffa761aa,
+            0xffaf4980, 0xffb83055, 0xffc0182a, 0xffc80000, 0xffd33300, 0xffde6600,
+            0xffe99900, 0xfff4cc00, 0xffffff00);
+
+    public static final Palette OCEAN = new Palette("Ocean", 40,
+            0xff000764, 0xff0b2a85, 0xff206bcb, 0xff5e9ee0, 0xffa6cfef,
+            0xffedffff, 0xfff7de9c, 0xffffaa00, 0xffb35a00, 0xff4f1d02);
+
+    public static final Palette GRAYSCALE = new Palette("Grayscale", 60,
+            0xff202020, 0xff404040, 0xff606060, 0xff808080,
+            0xffa0a0a0, 0xffc0c0c0, 0xffe0e0e0, 0xffffffff);
+
+    private final String name;
+
+    // The number of iterations that corresponds to the end of the color scale
+    private final int scaleIterations;
+
+    // The color scale
+    private final int[] colors;
+
+    // The colors blended over the scale
+    private final int[] table;
+
+    // The number of table entries per iteration
+    private final float tableScale;
+
+    // For an equalized palette, the position on the scale (0 to 1) at which each count starts.
+    // Null for a palette that is not equalized.
+    private final float[] cdf;
+
+    public Palette( String name, int scaleIterations, int... colors ) {
+        this(name, scaleIterations, colors, DEFAULT_TABLE_SIZE, null);
+    }
+
+    private Palette( String name, int scaleIterations, int[] colors, int tableSize, float[] cdf ) {
+        if( tableSize < 2 ) {
+            throw new IllegalArgumentException("Table size must be at least 2: " + tableSize);
+        }
+        this.name = name;
+        this.scaleIterations = scaleIterations;
+        this.colors = colors.clone();
+        this.table = buildTable(this.colors, tableSize);
+        this.tableScale = (float) tableSize / scaleIterations;
+        this.cdf = cdf;
+    }
+
+    /**
+     * Blend the colors into a table.  Color i is placed at the middle of the i-th of
+     * colors.length equal parts of the table, and the entries between two colors are linear
+     * blends of them.
+     */
+    private static int[] buildTable( int[] colors, int size ) {
+        int[] table = new int[size];
+        for( int k = 0; k < size; k++ ) {
+            double position = (k + 0.5) / size * colors.length - 0.5;
+            int i = (int) Math.floor(position);
+            if( i < 0 ) {
+                table[k] = colors[0];
+            } else if( i >= colors.length - 1 ) {
+                table[k] = colors[colors.length - 1];
+            } else {
+                table[k] = blend(colors[i], colors[i + 1], position - i);
+            }
+        }
+        return table;
+    }
+
+    private static int blend( int c0, int c1, double t ) {
+        int argb = BLACK;
+        for( int shift = 0; shift < 24; shift += 8 ) {
+            int a = (c0 >> shift) & 0xff, b = (c1 >> shift) & 0xff;
+            argb |= (int) Math.round(a + (b - a) * t) << shift;
+        }
+        return argb;
+    }
+
+    /**
+     * @return all of the predefined palettes
+     */
+    public static List<Palette> all() {
+        return List.of(SUNSET, OCEAN, GRAYSCALE);
+    }
+
+    /**
+     * Returns this palette with a lookup table of a different size.  Larger tables give
+     * smoother gradients.
+     * @param size the number of entries
+     * @return the palette
+     */
+    public Palette withTableSize( int size ) {
+        return new Palette(name, scaleIterations, colors, size, cdf);
+    }
+
+    /**
+     * Returns this palette equalized for the counts of an image: the colors are spread so that
+     * each one covers about the same number of escaped pixels, instead of the same number of
+     * iterations.
+     * @param histogram the number of pixels with each count (see Histogram)
+     * @return the equalized palette
+     */
+    public Palette equalize( int[] histogram ) {
+        long total = 0;
+        for( int n = 1; n < histogram.length; n++ ) {
+            total += histogram[n];
+        }
+        float[] cdf = new float[histogram.length + 1];
+        long below = 0;
+        for( int n = 1; n < histogram.length; n++ ) {
+            cdf[n] = total == 0 ? 0 : (float) ((double) below / total);
+            below += histogram[n];
+        }
+        cdf[histogram.length] = 1;
+        return new Palette(name, scaleIterations, colors, table.length, cdf);
+    }
+
+    /**
+     * @return true if this palette was equalized for an image
+     */
+    public boolean isEqualized() { return cdf != null; }
+
+    /**
+     * Returns the color for a number of iterations.
+     * @param iterations the number of iterations (zero for points in the set)
+     * @return the ARGB color
+     */
+    public int color( int iterations ) {
+        return color(iterations, 0);
+    }
+
+    /**
+     * Returns the color for a number of iterations with a fractional part.
+     * @param iterations the number of iterations (zero for points in the set)
+     * @param fraction the fractional part, usually from 0 up to 1 (it may lie a little outside,
+     *                 see FractalGenerator.smoothFraction)
+     * @return the ARGB color
+     */
+    public int color( int iterations, float fraction ) {
+        if( iterations == 0 ) return BLACK;
+        double count = Math.max(1.0, iterations + fraction);
+        int index;
+        if( cdf == null ) {
+            index = (int) (count * tableScale);
+        } else {
+            int n = Math.min((int) count, cdf.length - 2);
+            double f = Math.min(1.0, count - n);
+            index = (int) ((cdf[n] + f * (cdf[n + 1] - cdf[n])) * table.length);
+        }
+        if( index >= table.length ) index = table.length - 1;
+        return table[ index ];
+    }
+
+    /**
+     * Returns the average color of several samples of a pixel.
+     * @param samples the iteration counts of the samples, including the fractional parts
+     * @param smooth whether to use the fractional parts
+     * @return the ARGB color
+     */
+    public int averageColor( float[] samples, boolean smooth ) {
+        int r = 0, g = 0, b = 0;
+        for( float sample : samples ) {
+            // Points in the set have a count of exactly zero, and all others more than zero
+            int n = sample > 0 ? Math.max(1, (int) sample) : 0;
+            int c = color(n, smooth ? sample - n : 0);
+            r += (c >> 16) & 0xff;
+            g += (c >> 8) & 0xff;
+            b += c & 0xff;
+        }
+        int n = samples.length;
+        return BLACK | (r / n) << 16 | (g / n) << 8 | (b / n);
+    }
+
+    /**
+     * Colorize a range of an iteration buffer.
+     * @param iterations the iteration counts
+     * @param argb the destination colors
+     * @param offset index of the first element to convert
+     * @param count the number of elements to convert
+     */
+    public void colorize( int[] iterations, int[] argb, int offset, int count ) {
+        colorize(iterations, null, offset, argb, offset, count);
+    }
+
+    /**
+     * Colorize a range of an iteration buffer into a different position of the destination.
+     * @param iterations the iteration counts
+     * @param srcOffset index of the first iteration count to convert
+     * @param argb the destination colors
+     * @param dstOffset index in argb of the first color
+     * @param count the number of elements to convert
+     */
+    public void colorize( int[] iterations, int srcOffset, int[] argb, int dstOffset, int count ) {
+        colorize(iterations, null, srcOffset, argb, dstOffset, count);
+    }
+
+    /**
+     * Colorize a range of an iteration buffer, including the fractional parts of the counts.
+     * @param iterations the iteration counts
+     * @param fractions the fractional parts of the counts, or null to use whole counts
+     * @param srcOffset index of the first iteration count to convert
+     * @param argb the destination colors
+     * @param dstOffset index in argb of the first color
+     * @param count the number of elements to convert
+     */
+    public void colorize( int[] iterations, float[] fractions, int srcOffset, int[] argb, int dstOffset, int count ) {
+        if( fractions == null ) {
+            for( int i = 0; i < count; i++ ) {
+                argb[dstOffset + i] = color(iterations[srcOffset + i]);
+            }
+        } else {
+            for( int i = 0; i < count; i++ ) {
+                argb[dstOffset + i] = color(iterations[srcOffset + i], fractions[srcOffset + i]);
+            }
+        }
+    }
+
+    public String getName() { return name; }
+
+    @Override
+    public String toString() { return name; }
+}
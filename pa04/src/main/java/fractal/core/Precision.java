@@ -0,0 +1,30 @@
+package fractal.core;
+
+/**
+ * The arithmetic the generator used for the pixels of a frame.
+ */
+public enum Precision {
+
+    /**
+     * Float lanes in the vector kernel, for shallow views (see FractalGenerator.FLOAT_THRESHOLD).
+     * The iteration counts are the same as with DOUBLE; points for which that cannot be shown are
+     * iterated again in double.  The fractions for smooth coloring are not the same, so neither
+     * are the colors.
+     */
+    FLOAT("float"),
+
+    /** Double precision throughout. */
+    DOUBLE("double"),
+
+    /** Double precision relative to a reference orbit computed with BigDecimal, for deep zooms. */
+    PERTURBATION("perturbation");
+
+    private final String label;
+
+    Precision( String label ) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() { return label; }
+}
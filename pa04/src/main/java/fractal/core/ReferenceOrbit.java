@@ -0,0 +1,145 @@
+package fractal.core;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Perturbation iteration for deep zooms.  The orbit of one reference point C (the center of
+ * the view) is computed once with BigDecimal arithmetic, with enough digits for the zoom depth,
+ * and stored as doubles.  Every pixel c = C + dc is then iterated as a small double-precision
+ * difference from that orbit:
+ *
+ *     dz(n+1) = 2 Z(n) dz(n) + dz(n)^2 + dc,    z(n) = Z(n) + dz(n)
+ *
+ * The differences stay small relative to the pixel spacing, so doubles are accurate even
+ * where the points themselves cannot be told apart as doubles.
+ *
+ * A pixel whose orbit moves away from the reference orbit loses precision (a "glitch").  This
+ * is detected when |z| becomes smaller than |dz|, or when the reference orbit runs out because
+ * the reference point escaped.  The pixel is then rebased: its full value z becomes the new
+ * difference, measured from the start of the reference orbit (Z(0) = 0), and iteration
+ * continues.  Rebasing keeps a single reference orbit valid for the whole image.
+ */
+final class ReferenceOrbit {
+
+    // The reference orbit Z(0), Z(1), ... as doubles
+    private final double[] zx, zy;
+
+    // The number of values in the orbit
+    private final int length;
+
+    // The viewport and maximum number of iterations the orbit was computed for
+    private final Viewport viewport;
+    private final int maxIterations;
+
+    // The reference point as doubles
+    private final double centerX, centerY;
+
+    // The most recently computed orbit, or null
+    private static volatile ReferenceOrbit last;
+
+    private ReferenceOrbit( double[] zx, double[] zy, int length, Viewport viewport, int maxIterations ) {
+        this.zx = zx;
+        this.zy = zy;
+        this.length = length;
+        this.viewport = viewport;
+        this.maxIterations = maxIterations;
+        this.centerX = viewport.getCenterX();
+        this.centerY = viewport.getCenterY();
+    }
+
+    /**
+     * Get the orbit of a reference point, reusing the last one computed if it is for the same
+     * viewport and number of iterations.  An image rendered in strips, by one generator or
+     * several, then computes its orbit only once.
+     * @param viewport the viewport; its exact center is the reference point
+     * @param maxIterations the maximum number of iterations
+     * @return the reference orbit
+     */
+    static ReferenceOrbit of( Viewport viewport, int maxIterations ) {
+        ReferenceOrbit orbit = last;
+        if( orbit == null || orbit.maxIterations != maxIterations || !orbit.viewport.equals(viewport) ) {
+            orbit = compute(viewport, maxIterations);
+            last = orbit;
+        }
+        return orbit;
+    }
+
+    /**
+     * Compute the orbit of a reference point.
+     * @param viewport the viewport; its exact center is the reference point
+     * @param maxIterations the maximum number of iterations
+     * @return the reference orbit
+     */
+    static ReferenceOrbit compute( Viewport viewport, int maxIterations ) {
+        MathContext mc = Viewport.mathContext(viewport.getScale());
+        BigDecimal cx = viewport.getExactCenterX(), cy = viewport.getExactCenterY();
+        BigDecimal x = BigDecimal.ZERO, y = BigDecimal.ZERO;
+        BigDecimal two = BigDecimal.valueOf(2);
+
+        double[] zx = new double[maxIterations + 1];
+        double[] zy = new double[maxIterations + 1];
+        int n = 0;
+        while( true ) {
+            zx[n] = x.doubleValue();
+            zy[n] = y.doubleValue();
+            n++;
+            if( n > maxIterations || zx[n - 1] * zx[n - 1] + zy[n - 1] * zy[n - 1] > 4.0 ) break;
+
+            BigDecimal xNext = x.multiply(x, mc).subtract(y.multiply(y, mc), mc).add(cx, mc);
+            BigDecimal yNext = two.multiply(x, mc).multiply(y, mc).add(cy, mc);
+            x = xNext;
+            y = yNext;
+        }
+        return new ReferenceOrbit(zx, zy, n, viewport, maxIterations);
+    }
+
+    /**
+     * @return the number of iterations of the reference orbit before it escaped (or the
+     *         maximum number of iterations)
+     */
+    int getLength() { return length - 1; }
+
+    /**
+     * Iterate the pixel at offset (dcx, dcy) from the reference point.
+     * @param dcx the real offset from the reference point
+     * @param dcy the imaginary offset from the reference point
+     * @param maxIterations the maximum number of iterations
+     * @param fraction if not null, element 0 receives the fractional part of the count, or zero
+     *                 if the point did not escape
+     * @return the number of iterations required to reach a magnitude of 2.0 or more, or zero if
+     *         we reached the maximum number of iterations
+     */
+    int iterate( double dcx, double dcy, int maxIterations, float[] fraction ) {
+        double dx = 0.0, dy = 0.0;
+        int m = 0;   // Index into the reference orbit
+        int iterations = 0;
+        while( iterations < maxIterations ) {
+            double rx = zx[m], ry = zy[m];
+            double dxNext = 2.0 * (rx * dx - ry * dy) + (dx * dx - dy * dy) + dcx;
+            double dyNext = 2.0 * (rx * dy + ry * dx) + 2.0 * dx * dy + dcy;
+            dx = dxNext;
+            dy = dyNext;
+            m++;
+            iterations++;
+
+            double x = zx[m] + dx, y = zy[m] + dy;
+            double zlen2 = x * x + y * y;
+            if( zlen2 > 4.0 ) {
+                if( fraction != null ) {
+                    fraction[0] = FractalGenerator.smoothFraction(x, y, centerX + dcx, centerY + dcy);
+                }
+                return iterations;
+            }
+
+            // Glitch: the pixel is closer to 0 than to the reference, or the reference ended
+            if( m == length - 1 || zlen2 < dx * dx + dy * dy ) {
+                dx = x;
+                dy = y;
+                m = 0;
+            }
+        }
+        if( fraction != null ) fraction[0] = 0;
+        return 0;
+    }
+}
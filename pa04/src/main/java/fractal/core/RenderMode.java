@@ -0,0 +1,27 @@
+package fractal.core;
+
+/**
+ * The ways the generator can fill in a tile.
+ */
+public enum RenderMode {
+
+    /** Iterate every pixel of the tile. */
+    STANDARD("Standard"),
+
+    /**
+     * Mariani-Silver subdivision: compute the border of a rectangle first, fill the inside
+     * without iterating when the whole border is inside the set, and split the rectangle into
+     * four otherwise.  Interleaved tiles, and kernels whose exterior is not connected (see
+     * FractalKernel.hasConnectedExterior), are drawn in STANDARD mode.
+     */
+    BOUNDARY_TRACE("Boundary tracing");
+
+    private final String label;
+
+    RenderMode( String label ) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() { return label; }
+}
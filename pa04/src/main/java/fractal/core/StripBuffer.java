@@ -0,0 +1,118 @@
+package fractal.core;
+
+import java.util.Arrays;
+
+/**
+ * An IterationBuffer that holds a horizontal strip of a larger frame: the rows
+ * [firstRow, firstRow + rows).  The strip can be moved down the frame and reused, so that
+ * frames of any height can be rendered with a fixed amount of memory.
+ */
+public class StripBuffer implements IterationBuffer {
+
+    // Frame dimensions
+    private final int width;
+    private final int height;
+
+    // The number of rows held
+    private final int rows;
+
+    // The first row of the frame that is held
+    private int firstRow;
+
+    // The number of iterations of each pixel in the strip, row by row
+    private final int[] iterations;
+
+    // The fractional part of the number of iterations of each pixel
+    private final float[] fractions;
+
+    // The anti-aliasing samples of each pixel, or null for pixels without samples
+    private final float[][] samples;
+
+    public StripBuffer( int width, int height, int rows ) {
+        this.width = width;
+        this.height = height;
+        this.rows = rows;
+        this.iterations = new int[width * rows];
+        this.fractions = new float[width * rows];
+        this.samples = new float[width * rows][];
+    }
+
+    /**
+     * Move the strip.  The contents are not changed.
+     * @param firstRow the first row of the frame that the strip holds
+     */
+    public void setFirstRow( int firstRow ) {
+        this.firstRow = firstRow;
+    }
+
+    public int getFirstRow() { return firstRow; }
+    public int getRows() { return rows; }
+
+    @Override
+    public void writePixel( int x, int y, int iterations, float fraction ) {
+        this.iterations[(y - firstRow) * width + x] = iterations;
+        this.fractions[(y - firstRow) * width + x] = fraction;
+    }
+
+    @Override
+    public void fill( int x, int y, int w, int h, int iterations ) {
+        for( int row = y; row < y + h; row++ ) {
+            int offset = (row - firstRow) * width + x;
+            Arrays.fill(this.iterations, offset, offset + w, iterations);
+            Arrays.fill(fractions, offset, offset + w, 0);
+        }
+    }
+
+    @Override
+    public int getIterations( int x, int y ) {
+        return iterations[(y - firstRow) * width + x];
+    }
+
+    @Override
+    public float getFraction( int x, int y ) {
+        return fractions[(y - firstRow) * width + x];
+    }
+
+    @Override
+    public void writeSamples( int x, int y, float[] samples ) {
+        this.samples[(y - firstRow) * width + x] = samples;
+    }
+
+    /**
+     * @return the anti-aliasing samples of a pixel, or null if it has none
+     */
+    public float[] getSamples( int x, int y ) {
+        return samples[(y - firstRow) * width + x];
+    }
+
+    /**
+     * Convert one row of the strip to colors.
+     * @param palette the palette
+     * @param smooth whether to use the fractional parts of the counts
+     * @param y the row of the frame
+     * @param argb receives the colors, starting at index 0
+     */
+    public void colorizeRow( Palette palette, boolean smooth, int y, int[] argb ) {
+        int offset = (y - firstRow) * width;
+        palette.colorize(iterations, smooth ? fractions : null, offset, argb, 0, width);
+        for( int i = 0; i < width; i++ ) {
+            if( samples[offset + i] != null ) argb[i] = palette.averageColor(samples[offset + i], smooth);
+        }
+    }
+
+    @Override
+    public void markDirty( Tile tile ) { }
+
+    @Override
+    public void clear() {
+        Arrays.fill(iterations, 0);
+        Arrays.fill(fractions, 0);
+        Arrays.fill(samples, null);
+    }
+
+    @Override
+    public int getWidth() { return width; }
+
+    @Override
+    public int getHeight() { return height; }
+}
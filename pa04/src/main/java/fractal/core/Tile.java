@@ -0,0 +1,62 @@
+package fractal.core;
+
+/**
+ * A unit of work for the generator: a group of pixels that is computed by a single worker.
+ *
+ * A tile covers the columns [x, x + width) and height rows starting at row y.  The rows are
+ * normally contiguous, but a tile may skip rows (rowStride greater than 1) so that
+ * interleaved partitions can be represented with the same object.
+ */
+public final class Tile {
+
+    private final int x, y;
+    private final int width, height;
+    private final int rowStride;
+
+    public Tile( int x, int y, int width, int height ) {
+        this(x, y, width, height, 1);
+    }
+
+    public Tile( int x, int y, int width, int height, int rowStride ) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.rowStride = rowStride;
+    }
+
+    /**
+     * Returns the pixel row of the i-th row of this tile.
+     * @param i the row index within the tile (0 to getHeight() - 1)
+     * @return the pixel row in the image
+     */
+    public int getRow( int i ) {
+        return y + i * rowStride;
+    }
+
+    /**
+     * Returns a copy of this tile moved by the given number of pixels.
+     * @param dx the horizontal offset
+     * @param dy the vertical offset
+     * @return the moved tile
+     */
+    public Tile translate( int dx, int dy ) {
+        return new Tile(x + dx, y + dy, width, height, rowStride);
+    }
+
+    public int getX() { return x; }
+    public int getY() { return y; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getRowStride() { return rowStride; }
+
+    /**
+     * @return the number of pixels in this tile
+     */
+    public int getPixelCount() { return width * height; }
+
+    @Override
+    public String toString() {
+        return String.format("Tile(%d, %d, %dx%d, stride %d)", x, y, width, height, rowStride);
+    }
+}
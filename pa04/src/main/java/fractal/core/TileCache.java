@@ -0,0 +1,202 @@
+package fractal.core;
+
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of computed tiles, so that regions that were already generated do not have to
+ * be computed again.  The complex plane is divided into square tiles of TILE_SIZE pixels along
+ * the pixel grid of the viewport (see Viewport.snapToGrid).  A tile is identified by its grid
+ * position, the kernel, the pixel step, the maximum number of iterations and the precision of
+ * the arithmetic, and stores the iteration count of every pixel.  The precision is part of the
+ * key because the fractions of float lanes and of perturbation differ slightly from those in
+ * double, and tiles with different fractions would show seams when smooth coloring is on.
+ *
+ * A tile at the edge of an image is only partly computed.  The cache remembers which rectangle
+ * of the tile is known, and only answers requests inside that rectangle.  Storing a part of a
+ * tile never loses a larger part that is already known: the two are merged when together they
+ * form a rectangle, and otherwise the larger one is kept.
+ *
+ * When the memory used by the tiles exceeds the budget, the least recently used tiles are
+ * evicted.  All methods are thread safe.
+ */
+public final class TileCache {
+
+    /** The side of a cached tile in pixels. */
+    public static final int TILE_SIZE = 64;
+
+    // Estimated memory used by an entry besides its iteration counts (key, map entry, headers)
+    private static final long ENTRY_OVERHEAD = 256;
+
+    private final long maxBytes;
+    private long bytes;
+
+    // In access order, so the first entry is the least recently used one
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private long hits, misses;
+
+    /**
+     * @param maxBytes the memory budget in bytes
+     */
+    public TileCache( long maxBytes ) {
+        if( maxBytes <= 0 ) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Look up part of a tile.
+     * @param key the tile
+     * @param x the first column within the tile
+     * @param y the first row within the tile (counted from the top)
+     * @param w the number of columns
+     * @param h the number of rows
+     * @return the tile entry, or null if the tile is not cached or the rectangle is not known
+     */
+    synchronized Entry get( Key key, int x, int y, int w, int h ) {
+        Entry entry = entries.get(key);
+        if( entry != null && entry.contains(x, y, w, h) ) {
+            hits++;
+            return entry;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Store a tile, combining it with any previous entry for the same tile, and evict tiles
+     * until the cache fits the memory budget again.  The entry must not be changed afterwards.
+     */
+    synchronized void put( Key key, Entry entry ) {
+        Entry old = entries.get(key);
+        if( old != null ) {
+            if( old.contains(entry.x, entry.y, entry.w, entry.h) ) return;
+            if( !entry.contains(old.x, old.y, old.w, old.h) ) {
+                Entry merged = Entry.merge(old, entry);
+                if( merged != null ) {
+                    entry = merged;
+                } else if( (long) old.w * old.h >= (long) entry.w * entry.h ) {
+                    return;
+                }
+            }
+        }
+
+        old = entries.put(key, entry);
+        if( old != null ) bytes -= old.size();
+        bytes += entry.size();
+
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while( bytes > maxBytes && it.hasNext() ) {
+            bytes -= it.next().getValue().size();
+            it.remove();
+        }
+    }
+
+    /**
+     * Remove all tiles.  The hit and miss counts are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public long getMaxBytes() { return maxBytes; }
+    public synchronized long getBytes() { return bytes; }
+    public synchronized int getTileCount() { return entries.size(); }
+
+    /**
+     * @return the number of tile lookups that were answered from the cache
+     */
+    public synchronized long getHits() { return hits; }
+
+    /**
+     * @return the number of tile lookups that had to be computed
+     */
+    public synchronized long getMisses() { return misses; }
+
+    /**
+     * Identifies a tile: its column and row on the tile grid, and the parameters that the
+     * iteration counts depend on.
+     */
+    static final class Key {
+        private final FractalKernel kernel;
+        private final double step;
+        private final int maxIterations;
+        private final Precision precision;
+        private final BigInteger column, row;
+
+        Key( FractalKernel kernel, double step, int maxIterations, Precision precision,
+             BigInteger column, BigInteger row ) {
+            this.kernel = kernel;
+            this.step = step;
+            this.maxIterations = maxIterations;
+            this.precision = precision;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals( Object other ) {
+            if( !(other instanceof Key) ) return false;
+            Key k = (Key) other;
+            return k.kernel.equals(kernel) && Double.compare(k.step, step) == 0 && k.maxIterations == maxIterations
+                    && k.precision == precision && k.column.equals(column) && k.row.equals(row);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = (kernel.hashCode() * 31 + Double.hashCode(step)) * 31 + maxIterations;
+            return ((h * 31 + precision.hashCode()) * 31 + column.hashCode()) * 31 + row.hashCode();
+        }
+    }
+
+    /**
+     * The iteration counts of a tile and their fractional parts, in rows of TILE_SIZE from the
+     * top, and the rectangle of the tile that is known.
+     */
+    static final class Entry {
+        final int[] iterations = new int[TILE_SIZE * TILE_SIZE];
+        final float[] fractions = new float[TILE_SIZE * TILE_SIZE];
+        private final int x, y, w, h;
+
+        Entry( int x, int y, int w, int h ) {
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+        }
+
+        boolean contains( int x, int y, int w, int h ) {
+            return x >= this.x && y >= this.y && x + w <= this.x + this.w && y + h <= this.y + this.h;
+        }
+
+        /**
+         * @return an entry with the pixels of both entries, or null if their known rectangles
+         *         do not form a rectangle together (they must match in one direction, and
+         *         overlap or touch in the other)
+         */
+        static Entry merge( Entry a, Entry b ) {
+            boolean columns = a.x == b.x && a.w == b.w && a.y <= b.y + b.h && b.y <= a.y + a.h;
+            boolean rows = a.y == b.y && a.h == b.h && a.x <= b.x + b.w && b.x <= a.x + a.w;
+            if( !columns && !rows ) return null;
+
+            int x = Math.min(a.x, b.x), y = Math.min(a.y, b.y);
+            Entry merged = new Entry(x, y, Math.max(a.x + a.w, b.x + b.w) - x, Math.max(a.y + a.h, b.y + b.h) - y);
+            for( Entry e : new Entry[] { a, b } ) {
+                for( int r = e.y; r < e.y + e.h; r++ ) {
+                    System.arraycopy(e.iterations, r * TILE_SIZE + e.x, merged.iterations, r * TILE_SIZE + e.x, e.w);
+                    System.arraycopy(e.fractions, r * TILE_SIZE + e.x, merged.fractions, r * TILE_SIZE + e.x, e.w);
+                }
+            }
+            return merged;
+        }
+
+        long size() {
+            return 4L * iterations.length + 4L * fractions.length + ENTRY_OVERHEAD;
+        }
+    }
+}
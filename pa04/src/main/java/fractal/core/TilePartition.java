@@ -0,0 +1,96 @@
+package fractal.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Strategies for dividing an image into tiles.  The generator schedules the tiles on a
+ * work-stealing pool, so the partition determines how evenly the work is spread out: pixels
+ * near the boundary of the set take far more iterations than the rest, so a few large
+ * tiles tend to leave threads idle while one thread finishes the expensive region.
+ */
+public enum TilePartition {
+
+    /** Horizontal strips spanning the full width of the image. */
+    ROWS("Row strips") {
+        @Override
+        public List<Tile> split(int width, int height, int threads) {
+            List<Tile> tiles = new ArrayList<>();
+            int count = Math.min(height, threads * TILES_PER_THREAD);
+            for( int i = 0; i < count; i++ ) {
+                int y0 = (int)((long) height * i / count);
+                int y1 = (int)((long) height * (i + 1) / count);
+                tiles.add(new Tile(0, y0, width, y1 - y0));
+            }
+            return tiles;
+        }
+    },
+
+    /** Vertical strips spanning the full height of the image. */
+    COLUMNS("Column strips") {
+        @Override
+        public List<Tile> split(int width, int height, int threads) {
+            List<Tile> tiles = new ArrayList<>();
+            int count = Math.min(width, threads * TILES_PER_THREAD);
+            for( int i = 0; i < count; i++ ) {
+                int x0 = (int)((long) width * i / count);
+                int x1 = (int)((long) width * (i + 1) / count);
+                tiles.add(new Tile(x0, 0, x1 - x0, height));
+            }
+            return tiles;
+        }
+    },
+
+    /** Square tiles of SQUARE_SIZE pixels (smaller along the right and bottom edges). */
+    SQUARES("Square tiles") {
+        @Override
+        public List<Tile> split(int width, int height, int threads) {
+            List<Tile> tiles = new ArrayList<>();
+            for( int y = 0; y < height; y += SQUARE_SIZE ) {
+                for( int x = 0; x < width; x += SQUARE_SIZE ) {
+                    tiles.add(new Tile(x, y, Math.min(SQUARE_SIZE, width - x), Math.min(SQUARE_SIZE, height - y)));
+                }
+            }
+            return tiles;
+        }
+    },
+
+    /** Row sets where set i contains the rows i, i + n, i + 2n, ... */
+    INTERLEAVED("Interleaved rows") {
+        @Override
+        public List<Tile> split(int width, int height, int threads) {
+            List<Tile> tiles = new ArrayList<>();
+            int count = Math.min(height, threads * TILES_PER_THREAD);
+            for( int i = 0; i < count; i++ ) {
+                int rows = (height - i + count - 1) / count;
+                tiles.add(new Tile(0, i, width, rows, count));
+            }
+            return tiles;
+        }
+    };
+
+    // Number of strips (or row sets) created for each thread, so that idle threads have
+    // something left to steal.
+    public static final int TILES_PER_THREAD = 4;
+
+    // Side length of the square tiles
+    public static final int SQUARE_SIZE = 64;
+
+    private final String label;
+
+    TilePartition( String label ) {
+        this.label = label;
+    }
+
+    /**
+     * Divide an image into tiles.  Every pixel of the image is covered by exactly one tile.
+     * @param width the image width
+     * @param height the image height
+     * @param threads the number of threads that will process the tiles
+     * @return the list of tiles
+     */
+    public abstract List<Tile> split(int width, int height, int threads);
+
+    @Override
+    public String toString() { return label; }
+}
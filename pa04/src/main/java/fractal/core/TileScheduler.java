@@ -0,0 +1,286 @@
+package fractal.core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Execution models for running the tiles of a frame on several threads.  They differ in how a
+ * thread finds its next tile: from a shared queue, by stealing half of another thread's range,
+ * by getting a thread of its own, or from a shared counter.  The result is the same; the
+ * speed depends on the host and on how unevenly the work is spread over the tiles.
+ *
+ * Each scheduler starts a set of Workers for a generation, which runs any number of passes
+ * over the tiles and is then closed.  A task is told the index of the worker running it, from
+ * 0 up to the number of threads, for the generation's telemetry.  Each thread holds its own
+ * index (see WorkerIndices), so two threads never share one.
+ */
+public enum TileScheduler {
+
+    /** A fixed pool of platform threads taking one task per tile from a shared queue. */
+    FIXED_POOL("Fixed thread pool") {
+        @Override
+        public Workers start(int threads) {
+            WorkerIndices indices = new WorkerIndices();
+            ThreadLocal<Integer> index = new ThreadLocal<>();
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> new Thread( () -> {
+                int i = indices.acquire();
+                index.set(i);
+                try {
+                    r.run();
+                } finally {
+                    indices.release(i);
+                }
+            }, "tile-worker"));
+            return new Workers() {
+                @Override
+                public void run(int count, TileTask task) {
+                    List<Future<?>> futures = new ArrayList<>(count);
+                    for( int i = 0; i < count; i++ ) {
+                        int tile = i;
+                        futures.add(pool.submit( () -> task.run(tile, index.get()) ));
+                    }
+                    awaitAll(futures);
+                }
+
+                @Override
+                public void close() { pool.shutdown(); }
+            };
+        }
+    },
+
+    /**
+     * A work-stealing ForkJoinPool.  The range of tiles is split in half recursively, and a
+     * thread that runs out of tiles steals half of the remaining range of a busy thread.  The
+     * pool never adds threads beyond the parallelism (it does not even add threads to replace
+     * blocked ones), so the worker indices stay below the number of threads.
+     */
+    FORK_JOIN("Fork/join") {
+        @Override
+        public Workers start(int threads) {
+            WorkerIndices indices = new WorkerIndices();
+            ForkJoinPool pool = new ForkJoinPool(threads, p -> new IndexedWorkerThread(p, indices), null, false,
+                    0, threads, 1, p -> true, 60, TimeUnit.SECONDS);
+            return new Workers() {
+                @Override
+                public void run(int count, TileTask task) {
+                    pool.invoke(new SplitTask(task, 0, count));
+                }
+
+                @Override
+                public void close() { pool.shutdown(); }
+            };
+        }
+    },
+
+    /**
+     * One virtual thread per tile.  At most as many tiles run at once as there are threads,
+     * since the work is pure computation and more would only compete for the carrier threads.
+     */
+    VIRTUAL_THREADS("Virtual threads") {
+        @Override
+        public Workers start(int threads) {
+            ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor();
+
+            // The free worker indices; a tile waits here for one
+            BlockingQueue<Integer> slots = new ArrayBlockingQueue<>(threads);
+            for( int w = 0; w < threads; w++ ) {
+                slots.add(w);
+            }
+            return new Workers() {
+                @Override
+                public void run(int count, TileTask task) {
+                    List<Future<?>> futures = new ArrayList<>(count);
+                    for( int i = 0; i < count; i++ ) {
+                        int tile = i;
+                        futures.add(pool.submit( () -> {
+                            int worker = slots.take();
+                            try {
+                                task.run(tile, worker);
+                            } finally {
+                                slots.add(worker);
+                            }
+                            return null;
+                        }));
+                    }
+                    awaitAll(futures);
+                }
+
+                @Override
+                public void close() { pool.shutdown(); }
+            };
+        }
+    },
+
+    /**
+     * Platform threads that take the next tile from a shared atomic counter, without locks or
+     * a queue.
+     */
+    ATOMIC_COUNTER("Shared tile counter") {
+        @Override
+        public Workers start(int threads) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> new Thread(r, "tile-worker"));
+            return new Workers() {
+                @Override
+                public void run(int count, TileTask task) {
+                    AtomicInteger next = new AtomicInteger();
+                    List<Future<?>> futures = new ArrayList<>(threads);
+                    for( int w = 0; w < threads; w++ ) {
+                        int worker = w;
+                        futures.add(pool.submit( () -> {
+                            for( int tile = next.getAndIncrement(); tile < count; tile = next.getAndIncrement() ) {
+                                task.run(tile, worker);
+                            }
+                        }));
+                    }
+                    awaitAll(futures);
+                }
+
+                @Override
+                public void close() { pool.shutdown(); }
+            };
+        }
+    };
+
+    private final String label;
+
+    TileScheduler( String label ) {
+        this.label = label;
+    }
+
+    /**
+     * Start the threads for one generation.
+     * @param threads the number of threads
+     * @return the workers, which must be closed when the generation is finished
+     */
+    public abstract Workers start(int threads);
+
+    @Override
+    public String toString() { return label; }
+
+    /**
+     * The work done for a tile.
+     */
+    @FunctionalInterface
+    public interface TileTask {
+        /**
+         * @param tile the index of the tile
+         * @param worker the index of the worker running it
+         */
+        void run(int tile, int worker);
+    }
+
+    /**
+     * The threads of a scheduler during one generation.
+     */
+    public interface Workers extends AutoCloseable {
+        /**
+         * Run a task for each of the tiles 0 to count - 1, and wait until all have finished.
+         * @param count the number of tiles
+         * @param task the task
+         */
+        void run(int count, TileTask task);
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Hands out the lowest free worker index, so that the threads of a pool have the indices
+     * 0 up to the number of threads, even when a thread is replaced.  The pool index of a
+     * ForkJoinWorkerThread cannot be used instead: it is not dense, and taken modulo the
+     * number of threads it can be the same for two threads.
+     */
+    private static final class WorkerIndices {
+        private final BitSet used = new BitSet();
+
+        synchronized int acquire() {
+            int index = used.nextClearBit(0);
+            used.set(index);
+            return index;
+        }
+
+        synchronized void release( int index ) {
+            used.clear(index);
+        }
+    }
+
+    /**
+     * A fork/join thread with a worker index, which it gives back when it ends.
+     */
+    private static final class IndexedWorkerThread extends ForkJoinWorkerThread {
+        private final WorkerIndices indices;
+        private final int index;
+
+        IndexedWorkerThread( ForkJoinPool pool, WorkerIndices indices ) {
+            super(pool);
+            this.indices = indices;
+            this.index = indices.acquire();
+            setName("tile-worker-" + index);
+        }
+
+        @Override
+        protected void onTermination( Throwable exception ) {
+            indices.release(index);
+            super.onTermination(exception);
+        }
+    }
+
+    /**
+     * Runs the tiles [from, to), splitting the range in half until a single tile remains.
+     */
+    private static final class SplitTask extends RecursiveAction {
+        private final TileTask task;
+        private final int from, to;
+
+        SplitTask( TileTask task, int from, int to ) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if( to - from == 1 ) {
+                // The pool's threads run all of its tasks; the calling thread only waits
+                Thread thread = Thread.currentThread();
+                int worker = thread instanceof IndexedWorkerThread ? ((IndexedWorkerThread) thread).index : 0;
+                task.run(from, worker);
+            } else if( to > from ) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SplitTask(task, from, mid), new SplitTask(task, mid, to));
+            }
+        }
+    }
+
+    /**
+     * Wait for all tasks, and rethrow the first exception that one of them threw.
+     */
+    private static void awaitAll( List<Future<?>> futures ) {
+        try {
+            for( Future<?> future : futures ) {
+                future.get();
+            }
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            futures.forEach( f -> f.cancel(true) );
+        } catch( ExecutionException e ) {
+            futures.forEach( f -> f.cancel(true) );
+            Throwable cause = e.getCause();
+            if( cause instanceof RuntimeException ) throw (RuntimeException) cause;
+            if( cause instanceof Error ) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package fractal.core;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The Mandelbrot iteration for a group of horizontally adjacent pixels at once, using the
+ * (incubating) JDK Vector API.  Each lane of a vector holds one pixel.  A lane is retired
+ * when its point escapes, and the loop ends when every lane is retired.
+ *
+ * The arithmetic is done in the same order as the scalar loop in MandelbrotKernel and without
+ * fused multiply-add, so the iteration counts are identical.  The JVM must be started with
+ * --add-modules jdk.incubator.vector to use this class.
+ *
+ * iterateRowFloat does the same with float lanes, twice as many per vector.  Alongside each
+ * orbit it carries a bound on the distance between the float orbit and the exact orbit, which
+ * also covers the rounding of the double loop.  A point is only counted as escaped, or as not
+ * escaped yet, when the bound leaves no doubt that the double loop decides the same way;
+ * otherwise the point is iterated again in double.  So the iteration counts are the same as
+ * with iterateRow.  The fractions are computed from the float |z|, and differ from the double
+ * ones by less than 3e-4 (in practice, by a few units in the last place).
+ */
+final class VectorKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // The error bound b of a float orbit is the distance to the exact orbit plus the distance
+    // from the exact orbit to the double orbit.  Each step adds at most ROUNDING * (|z|^2 + |c| + 1)
+    // for the rounding of both loops and of c to a float, and multiplies the bound carried over
+    // by at most 2|z| + 2b.
+    private static final float ROUNDING = 0x1.8p-22f;
+
+    // To avoid a square root per iteration, b^2 is tracked instead, using
+    // (x + y)^2 <= (1 + DELTA) x^2 + (1 + 1/DELTA) y^2 for both sums above.  The factors are
+    // rounded up to cover the rounding of the bound itself.
+    private static final float DELTA = 0x1p-6f;
+    private static final float GROWTH_Z = (1 + DELTA) * (1 + DELTA) * 4.0004f;
+    private static final float GROWTH_B = (1 + DELTA) * (1 + 1 / DELTA) * 4.0001f;
+    private static final float ROUNDING_SPLIT = (1 + 1 / DELTA) * 1.0001f;
+
+    // A point is inside the circle of radius 2 for certain if |z|^2 + STAY_FACTOR * b^2 is below
+    // STAY_LIMIT, because (|z| + b)^2 <= |z|^2 + 4b + b^2 and 4b <= EPSILON + 4b^2 / EPSILON.
+    // The limit also covers the rounding of |z|^2 and of the test.
+    private static final float EPSILON = 0x1p-13f;
+    private static final float STAY_FACTOR = (1 + 4 / EPSILON) * 1.0001f;
+    private static final float STAY_LIMIT = 4.0f - EPSILON - 0x1p-12f;
+
+    // A point is outside the circle for certain if |z| minus the bound is above 2 + MARGIN.  The
+    // margin covers the rounding of |z| and of the test.
+    private static final float MARGIN = 0x1p-16f;
+
+    // The largest error bound with which a point is counted as escaped.  This limits the error
+    // of the fraction, which is computed from the float |z|, to less than 3e-4.
+    private static final float MAX_ESCAPE_ERROR = 0x1p-12f;
+
+    private VectorKernel() { }
+
+    /**
+     * @return the number of pixels that are iterated together (4 with AVX2, 8 with AVX-512)
+     */
+    static int laneCount() {
+        return SPECIES.length();
+    }
+
+    /**
+     * @return the number of pixels that are iterated together by iterateRowFloat
+     */
+    static int floatLaneCount() {
+        return FLOAT_SPECIES.length();
+    }
+
+    /**
+     * Iterate a row of pixels.
+     * @param cx the real part of each pixel.  The length must be a multiple of laneCount(); the
+     *           results for entries beyond count are not stored.
+     * @param cy the imaginary part shared by the row
+     * @param count the number of pixels to store in out
+     * @param maxIterations the maximum number of iterations
+     * @param interiorChecking whether to skip points inside the main cardioid or period-2 bulb.
+     *                         Periodicity checking is not done here: the extra compares per
+     *                         iteration cost more than the lanes they retire.
+     * @param out receives the number of iterations of each pixel, or zero if the point did not
+     *            escape within maxIterations
+     * @param fractions if not null, receives the fractional part of the count of each pixel (see
+     *                  FractalGenerator.smoothFraction)
+     */
+    static void iterateRow( double[] cx, double cy, int count, int maxIterations,
+                            boolean interiorChecking, int[] out, float[] fractions ) {
+        int lanes = SPECIES.length();
+        double[] result = new double[lanes];
+        double[] escapeX = new double[lanes];
+        double[] escapeY = new double[lanes];
+        DoubleVector cyv = DoubleVector.broadcast(SPECIES, cy);
+        double y2 = cy * cy;
+
+        for( int i = 0; i < count; i += lanes ) {
+            DoubleVector cxv = DoubleVector.fromArray(SPECIES, cx, i);
+
+            VectorMask<Double> active = SPECIES.maskAll(true);
+            if( interiorChecking ) {
+                DoubleVector xq = cxv.sub(0.25);
+                DoubleVector q = xq.mul(xq).add(y2);
+                VectorMask<Double> cardioid = q.mul(q.add(xq)).compare(VectorOperators.LT, 0.25 * y2);
+                DoubleVector xb = cxv.add(1.0);
+                VectorMask<Double> bulb = xb.mul(xb).add(y2).compare(VectorOperators.LT, 0.0625);
+                active = cardioid.or(bulb).not();
+            }
+
+            DoubleVector zx = DoubleVector.zero(SPECIES);
+            DoubleVector zy = DoubleVector.zero(SPECIES);
+            DoubleVector iterations = DoubleVector.zero(SPECIES);
+            VectorMask<Double> inside = active.not();
+            int n = 0;
+            while( n < maxIterations && active.anyTrue() ) {
+                DoubleVector zxNext = zx.mul(zx).sub(zy.mul(zy)).add(cxv);
+                DoubleVector zyNext = zx.mul(2.0).mul(zy).add(cyv);
+                zx = zx.blend(zxNext, active);
+                zy = zy.blend(zyNext, active);
+                DoubleVector zlen2 = zx.mul(zx).add(zy.mul(zy));
+                iterations = iterations.add(1.0, active);
+                active = active.and(zlen2.compare(VectorOperators.LE, 4.0));
+                n++;
+            }
+
+            // Lanes that are still active reached the maximum without escaping
+            iterations = iterations.blend(0.0, active.or(inside));
+            iterations.intoArray(result, 0);
+            int end = Math.min(lanes, count - i);
+            for( int k = 0; k < end; k++ ) {
+                out[i + k] = (int) result[k];
+            }
+
+            // A lane stops changing when its point escapes, so z still holds the escaping value
+            if( fractions != null ) {
+                zx.intoArray(escapeX, 0);
+                zy.intoArray(escapeY, 0);
+                for( int k = 0; k < end; k++ ) {
+                    fractions[i + k] = out[i + k] == 0 ? 0
+                            : FractalGenerator.smoothFraction(escapeX[k], escapeY[k], cx[i + k], cy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as iterateRow without interior checking, with float lanes.  Points where float
+     * precision cannot be shown to give the same count are iterated again with iterateRow.
+     * Only the counts are guaranteed to be the same: the fractions are continued from the
+     * float value of z at escape, so they differ slightly from those of iterateRow.
+     * @param cx the real part of each pixel.  The length must be a multiple of floatLaneCount().
+     * @param cxf cx rounded to floats
+     * @return the number of points that were iterated again in double
+     */
+    static int iterateRowFloat( double[] cx, float[] cxf, double cy, int count, int maxIterations,
+                                int[] out, float[] fractions ) {
+        int lanes = FLOAT_SPECIES.length();
+        float[] result = new float[lanes];
+        float[] escapeX = new float[lanes];
+        float[] escapeY = new float[lanes];
+        boolean[] uncertain = new boolean[lanes];
+        int[] undecidedIndex = new int[count];
+        float cyf = (float) cy;
+        FloatVector cyv = FloatVector.broadcast(FLOAT_SPECIES, cyf);
+        int redone = 0;
+
+        for( int i = 0; i < count; i += lanes ) {
+            FloatVector cxv = FloatVector.fromArray(FLOAT_SPECIES, cxf, i);
+
+            // Before each step |z| < 2, so the rounding error is at most ROUNDING * (|c| + 5)
+            FloatVector rounding = cxv.abs().add(Math.abs(cyf) + 5.0f).mul(ROUNDING);
+            FloatVector rounding2 = rounding.mul(rounding).mul(ROUNDING_SPLIT);
+
+            FloatVector zx = FloatVector.zero(FLOAT_SPECIES);
+            FloatVector zy = FloatVector.zero(FLOAT_SPECIES);
+            FloatVector zlen2 = FloatVector.zero(FLOAT_SPECIES);
+            FloatVector bound2 = FloatVector.zero(FLOAT_SPECIES);
+            FloatVector iterations = FloatVector.zero(FLOAT_SPECIES);
+            VectorMask<Float> active = FLOAT_SPECIES.maskAll(true);
+            int n = 0;
+            while( n < maxIterations && active.anyTrue() ) {
+                FloatVector bound2Next = bound2.mul(zlen2.mul(GROWTH_Z).add(bound2.mul(GROWTH_B))).add(rounding2);
+                FloatVector zxNext = zx.mul(zx).sub(zy.mul(zy)).add(cxv);
+                FloatVector zyNext = zx.mul(2.0f).mul(zy).add(cyv);
+                zx = zx.blend(zxNext, active);
+                zy = zy.blend(zyNext, active);
+                bound2 = bound2.blend(bound2Next, active);
+                zlen2 = zx.mul(zx).add(zy.mul(zy));
+                iterations = iterations.add(1.0f, active);
+
+                // A lane continues only while it is certainly inside the circle of radius 2
+                active = active.and(zlen2.add(bound2.mul(STAY_FACTOR)).compare(VectorOperators.LT, STAY_LIMIT));
+                n++;
+            }
+
+            // A lane that stopped is escaped if it is certainly outside the circle, and otherwise
+            // it is undecided.  Lanes that are still active reached the maximum.
+            FloatVector zabs = zlen2.sqrt();
+            FloatVector bound = bound2.sqrt();
+            VectorMask<Float> leaves = zabs.sub(bound).compare(VectorOperators.GT, 2.0f + MARGIN)
+                    .and(bound.compare(VectorOperators.LT, MAX_ESCAPE_ERROR));
+            VectorMask<Float> undecided = active.or(leaves).not();
+            iterations = iterations.blend(0.0f, active);
+            iterations.intoArray(result, 0);
+            zx.intoArray(escapeX, 0);
+            zy.intoArray(escapeY, 0);
+            undecided.intoArray(uncertain, 0);
+            int end = Math.min(lanes, count - i);
+            for( int k = 0; k < end; k++ ) {
+                if( uncertain[k] ) {
+                    undecidedIndex[redone++] = i + k;
+                } else {
+                    out[i + k] = (int) result[k];
+                    if( fractions != null ) {
+                        fractions[i + k] = out[i + k] == 0 ? 0
+                                : FractalGenerator.smoothFraction(escapeX[k], escapeY[k], cx[i + k], cy);
+                    }
+                }
+            }
+        }
+
+        // The undecided points of the row are iterated together in double lanes
+        if( redone > 0 ) {
+            double[] rx = new double[(redone + SPECIES.length() - 1) / SPECIES.length() * SPECIES.length()];
+            for( int k = 0; k < rx.length; k++ ) {
+                rx[k] = cx[undecidedIndex[Math.min(k, redone - 1)]];
+            }
+            int[] rout = new int[redone];
+            float[] rfractions = fractions != null ? new float[redone] : null;
+            iterateRow(rx, cy, redone, maxIterations, false, rout, rfractions);
+            for( int k = 0; k < redone; k++ ) {
+                out[undecidedIndex[k]] = rout[k];
+                if( fractions != null ) fractions[undecidedIndex[k]] = rfractions[k];
+            }
+        }
+        return redone;
+    }
+}
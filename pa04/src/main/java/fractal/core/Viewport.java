@@ -0,0 +1,235 @@
+package fractal.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * The region of the complex plane shown in an image, given by its center and its scale (the
+ * height of the region in the complex plane).  The width of the region follows from the aspect
+ * ratio of the image.  Viewports are immutable.
+ *
+ * The center is kept exactly (as BigDecimal) so that deep zooms, where the center needs more
+ * digits than a double has, can be panned and zoomed without losing the position.  The double
+ * accessors round the center.
+ */
+public final class Viewport {
+
+    /** Shows the whole Mandelbrot set. */
+    public static final Viewport DEFAULT = new Viewport(-0.5, 0.0, 2.0);
+
+    // Significant digits kept beyond those needed to resolve the scale
+    private static final int GUARD_DIGITS = 20;
+
+    // Precision of the scale of a viewport snapped to the pixel grid
+    private static final MathContext GRID_SCALE_CONTEXT = new MathContext(12);
+
+    private final BigDecimal exactCenterX, exactCenterY;
+    private final double centerX, centerY;
+    private final double scale;
+
+    public Viewport( double centerX, double centerY, double scale ) {
+        this(new BigDecimal(centerX), new BigDecimal(centerY), scale);
+    }
+
+    public Viewport( BigDecimal centerX, BigDecimal centerY, double scale ) {
+        if( !(scale > 0.0) || Double.isInfinite(scale) ) {
+            throw new IllegalArgumentException("Scale must be positive: " + scale);
+        }
+        MathContext mc = mathContext(scale);
+        this.exactCenterX = centerX.round(mc);
+        this.exactCenterY = centerY.round(mc);
+        this.centerX = exactCenterX.doubleValue();
+        this.centerY = exactCenterY.doubleValue();
+        this.scale = scale;
+    }
+
+    /**
+     * Returns a MathContext with enough digits to tell points a pixel apart at the given scale.
+     * @param scale the height of a region in the complex plane
+     */
+    public static MathContext mathContext( double scale ) {
+        int digits = (int) Math.ceil(-Math.log10(scale)) + GUARD_DIGITS;
+        return new MathContext(Math.max(digits, GUARD_DIGITS));
+    }
+
+    public double getCenterX() { return centerX; }
+    public double getCenterY() { return centerY; }
+    public BigDecimal getExactCenterX() { return exactCenterX; }
+    public BigDecimal getExactCenterY() { return exactCenterY; }
+    public double getScale() { return scale; }
+
+    /**
+     * @return the size of a pixel along the real axis for an image of the given size
+     */
+    public double getXStep( int width, int height ) {
+        double ar = (double)width / height;  // Aspect ratio
+        return ar * scale / width;
+    }
+
+    /**
+     * @return the size of a pixel along the imaginary axis for an image of the given size
+     */
+    public double getYStep( int width, int height ) {
+        return scale / height;
+    }
+
+    /**
+     * @return the real part of the left edge of the region for an image of the given size
+     */
+    public double getXStart( int width, int height ) {
+        double ar = (double)width / height;
+        return centerX - ar * scale / 2.0;
+    }
+
+    /**
+     * @return the imaginary part of the bottom edge of the region
+     */
+    public double getYStart( int width, int height ) {
+        return centerY - scale / 2.0;
+    }
+
+    /**
+     * Returns the real offset from the center of the point shown at a pixel column.  Unlike the
+     * position itself, the offset is accurate at any zoom depth.
+     * @param px the pixel column (may be fractional)
+     * @param width the image width
+     * @param height the image height
+     */
+    public double offsetX( double px, int width, int height ) {
+        return (px - width / 2.0) * getXStep(width, height);
+    }
+
+    /**
+     * Returns the imaginary offset from the center of the point shown at a pixel row.  Rows
+     * are counted from the top of the image.
+     * @param py the pixel row (may be fractional)
+     * @param width the image width
+     * @param height the image height
+     */
+    public double offsetY( double py, int width, int height ) {
+        return (height - py - 1 - height / 2.0) * getYStep(width, height);
+    }
+
+    /**
+     * Returns the real part of the point shown at a pixel column.
+     * @param px the pixel column (may be fractional)
+     * @param width the image width
+     * @param height the image height
+     */
+    public double toReal( double px, int width, int height ) {
+        return getXStart(width, height) + px * getXStep(width, height);
+    }
+
+    /**
+     * Returns the imaginary part of the point shown at a pixel row.  Rows are counted from the
+     * top of the image.
+     * @param py the pixel row (may be fractional)
+     * @param width the image width
+     * @param height the image height
+     */
+    public double toImaginary( double py, int width, int height ) {
+        return getYStart(width, height) + (height - py - 1) * getYStep(width, height);
+    }
+
+    /**
+     * Returns a viewport zoomed about a pixel.  The point shown at that pixel stays at the same
+     * position in the image.
+     * @param factor the scale factor (less than 1 zooms in)
+     * @param px the pixel column of the fixed point
+     * @param py the pixel row of the fixed point
+     * @param width the image width
+     * @param height the image height
+     * @return the new viewport
+     */
+    public Viewport zoom( double factor, double px, double py, int width, int height ) {
+        double shift = 1.0 - factor;
+        return pan(offsetX(px, width, height) * shift, offsetY(py, width, height) * shift)
+                .withScale(scale * factor);
+    }
+
+    /**
+     * Returns a viewport moved by an offset in the complex plane.
+     * @param dx the real offset
+     * @param dy the imaginary offset
+     * @return the new viewport
+     */
+    public Viewport pan( double dx, double dy ) {
+        return new Viewport(exactCenterX.add(new BigDecimal(dx)), exactCenterY.add(new BigDecimal(dy)), scale);
+    }
+
+    /**
+     * @return a viewport with the same center and a different scale
+     */
+    public Viewport withScale( double scale ) {
+        return new Viewport(exactCenterX, exactCenterY, scale);
+    }
+
+    /**
+     * Returns the grid column of the leftmost pixel column.  The pixel grid divides the complex
+     * plane into squares of one pixel step, with column 0 starting at the imaginary axis.
+     * @param width the image width
+     * @param height the image height
+     */
+    public BigInteger getGridX( int width, int height ) {
+        return gridIndex(exactCenterX, width, height);
+    }
+
+    /**
+     * Returns the grid row of the bottom pixel row.  Row 0 starts at the real axis, and grid
+     * rows count upwards.
+     * @param width the image width
+     * @param height the image height
+     */
+    public BigInteger getGridY( int width, int height ) {
+        return gridIndex(exactCenterY, height, height);
+    }
+
+    private BigInteger gridIndex( BigDecimal center, int pixels, int height ) {
+        double step = getYStep(pixels, height);
+        BigDecimal first = center.divide(new BigDecimal(step), mathContext(step))
+                .subtract(BigDecimal.valueOf(pixels / 2.0));
+        return first.setScale(0, RoundingMode.HALF_EVEN).toBigIntegerExact();
+    }
+
+    /**
+     * Returns a nearby viewport whose pixels lie exactly on the pixel grid, so that images of
+     * viewports that differ by whole pixels share their pixel values.  The scale is rounded to
+     * 12 significant digits, which makes zooming in and back out return to the same scale.  The
+     * center moves by less than a pixel.
+     * @param width the image width
+     * @param height the image height
+     * @return the snapped viewport
+     */
+    public Viewport snapToGrid( int width, int height ) {
+        Viewport v = withScale(new BigDecimal(scale).round(GRID_SCALE_CONTEXT).doubleValue());
+        BigDecimal step = new BigDecimal(v.getYStep(width, height));
+        BigDecimal x = step.multiply(new BigDecimal(v.getGridX(width, height)).add(BigDecimal.valueOf(width / 2.0)));
+        BigDecimal y = step.multiply(new BigDecimal(v.getGridY(width, height)).add(BigDecimal.valueOf(height / 2.0)));
+        return new Viewport(x, y, v.scale);
+    }
+
+    @Override
+    public boolean equals( Object other ) {
+        if( other == this ) return true;
+        if( !(other instanceof Viewport) ) return false;
+        Viewport v = (Viewport) other;
+        return v.exactCenterX.compareTo(exactCenterX) == 0 && v.exactCenterY.compareTo(exactCenterY) == 0
+                && v.scale == scale;
+    }
+
+    @Override
+    public int hashCode() {
+        return exactCenterX.stripTrailingZeros().hashCode() * 31 * 31
+                + exactCenterY.stripTrailingZeros().hashCode() * 31 + Double.hashCode(scale);
+    }
+
+    @Override
+    public String toString() {
+        // Enough digits to locate the center to a small fraction of the view
+        MathContext mc = new MathContext(Math.max(17, (int) Math.ceil(-Math.log10(scale)) + 5));
+        return String.format("(%s, %s) scale %s", exactCenterX.round(mc).toPlainString(),
+                exactCenterY.round(mc).toPlainString(), scale);
+    }
+}
@@ -1,17 +1,38 @@
 package fractal.gui;
 
+import fractal.core.BurningShipKernel;
 import fractal.core.FractalGenerationListener;
 import fractal.core.FractalGenerator;
 import fractal.core.FractalImage;
+import fractal.core.FractalKernel;
+import fractal.core.GenerationStats;
+import fractal.core.JuliaKernel;
+import fractal.core.MandelbrotKernel;
+import fractal.core.MultibrotKernel;
+import fractal.core.Palette;
+import fractal.core.RenderMode;
+import fractal.core.Tile;
+import fractal.core.TileCache;
+import fractal.core.TilePartition;
+import fractal.core.TileScheduler;
+import fractal.core.Viewport;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+
+import java.util.List;
 
 /**
  * The GUI for our fractal generator.
@@ -22,20 +43,60 @@ public class FractalGui extends VBox implements FractalGenerationListener {
     private static final int IMAGE_WIDTH = 1024;
     private static final int IMAGE_HEIGHT = 768;
 
+    // Scale factor for one step of the mouse wheel
+    private static final double ZOOM_STEP = 0.8;
+
+    // Memory budget of the tile cache
+    private static final long CACHE_BYTES = 64L << 20;
+
     // The fractal image
     private FractalImage image;
 
     // The panel that displays the image
     private final Canvas imagePanel;
 
+    // The generator (reused for every frame, so that a new frame can cancel the old one)
+    private final FractalGenerator generator;
+
+    // Tiles of earlier frames, reused when panning back or zooming back out
+    private final TileCache tileCache = new TileCache(CACHE_BYTES);
+
+    // The region of the complex plane that is displayed
+    private Viewport viewport = Viewport.DEFAULT;
+
+    // The measurements of the last complete generation, or null
+    private GenerationStats stats;
+
+    // Mouse position at the start of a drag
+    private double dragStartX, dragStartY;
+
     // Input/output GUI components
     private TextField numThreadsTf;
+    private ComboBox<FractalKernel> kernelCb;
+    private ComboBox<TilePartition> partitionCb;
+    private ComboBox<TileScheduler> schedulerCb;
+    private ComboBox<Palette> paletteCb;
+    private CheckBox interiorCb;
+    private CheckBox vectorCb;
+    private CheckBox cacheCb;
+    private CheckBox progressiveCb;
+    private CheckBox rampCb;
+    private CheckBox antialiasCb;
+    private CheckBox smoothCb;
+    private CheckBox equalizeCb;
+    private CheckBox heatmapCb;
+    private ComboBox<RenderMode> modeCb;
     private TextField executionTimeTf;
+    private TextField viewportTf;
+    private TextField statsTf;
     private Button startButton;
+    private Button stopButton;
 
     public FractalGui() {
         image = new FractalImage(IMAGE_WIDTH, IMAGE_HEIGHT);
         imagePanel = new Canvas(IMAGE_WIDTH, IMAGE_HEIGHT);
+        generator = new FractalGenerator(image);
+        generator.addListener(this);
         buildGui();
     }
 
@@ -43,20 +104,96 @@ public class FractalGui extends VBox implements FractalGenerationListener {
         numThreadsTf = new TextField();
         numThreadsTf.setPrefWidth(50);
         numThreadsTf.setText("1");
+        kernelCb = new ComboBox<>();
+        kernelCb.getItems().addAll(new MandelbrotKernel(), new JuliaKernel(-0.8, 0.156),
+                new JuliaKernel(0.285, 0.01), new BurningShipKernel(), new MultibrotKernel(3),
+                new MultibrotKernel(4));
+        kernelCb.setValue(kernelCb.getItems().get(0));
+        kernelCb.setOnAction( e -> setViewport(kernelCb.getValue().getDefaultViewport()) );
+        partitionCb = new ComboBox<>();
+        partitionCb.getItems().addAll(TilePartition.values());
+        partitionCb.setValue(TilePartition.SQUARES);
+        schedulerCb = new ComboBox<>();
+        schedulerCb.getItems().addAll(TileScheduler.values());
+        schedulerCb.setValue(TileScheduler.FORK_JOIN);
+        paletteCb = new ComboBox<>();
+        paletteCb.getItems().addAll(Palette.all());
+        paletteCb.setValue(image.getPalette());
+        paletteCb.setOnAction( e -> paletteAction() );
+        smoothCb = new CheckBox("Smooth");
+        smoothCb.setSelected(image.isSmooth());
+        smoothCb.setOnAction( e -> paletteAction() );
+        equalizeCb = new CheckBox("Equalize");
+        equalizeCb.setSelected(image.isEqualized());
+        equalizeCb.setOnAction( e -> paletteAction() );
+        modeCb = new ComboBox<>();
+        modeCb.getItems().addAll(RenderMode.values());
+        modeCb.setValue(RenderMode.STANDARD);
+        interiorCb = new CheckBox("Interior check");
+        interiorCb.setSelected(true);
+        vectorCb = new CheckBox("SIMD");
+        cacheCb = new CheckBox("Cache");
+        cacheCb.setSelected(true);
+        progressiveCb = new CheckBox("Preview");
+        progressiveCb.setSelected(true);
+        rampCb = new CheckBox("Ramp iterations");
+        antialiasCb = new CheckBox("Anti-alias");
         startButton = new Button("Start");
         startButton.setOnAction( e -> startButtonAction() );
+        stopButton = new Button("Stop");
+        stopButton.setDisable(true);
+        stopButton.setOnAction( e -> stopButtonAction() );
+        Button resetButton = new Button("Reset view");
+        resetButton.setOnAction( e -> setViewport(kernelCb.getValue().getDefaultViewport()) );
+        heatmapCb = new CheckBox("Heatmap");
+        heatmapCb.setOnAction( e -> redraw() );
         executionTimeTf = new TextField();
-        executionTimeTf.setPrefWidth(100);
+        executionTimeTf.setPrefWidth(160);
         executionTimeTf.setText("--");
         executionTimeTf.setEditable(false);
+        viewportTf = new TextField();
+        viewportTf.setPrefWidth(300);
+        viewportTf.setEditable(false);
+        viewportTf.setText(viewport.toString());
+        statsTf = new TextField();
+        statsTf.setPrefWidth(320);
+        statsTf.setEditable(false);
+        statsTf.setText("--");
+
+        // Scroll to zoom about the mouse position, drag to pan
+        imagePanel.setOnScroll(this::scrollAction);
+        imagePanel.setOnMousePressed(this::mousePressedAction);
+        imagePanel.setOnMouseDragged(this::mouseDraggedAction);
+        imagePanel.setOnMouseReleased(this::mouseReleasedAction);
 
+        // The controls are in two rows above and two below the image, to fit its width
         HBox topPanel = new HBox();
         topPanel.setSpacing(10);
         topPanel.setAlignment(Pos.CENTER);
         VBox.setMargin(topPanel, new Insets(10));
         topPanel.getChildren().addAll(
-                new Label("Number of threads: "),
-                numThreadsTf, startButton
+                new Label("Number of threads: "), numThreadsTf,
+                new Label("Fractal: "), kernelCb,
+                new Label("Partition: "), partitionCb,
+                new Label("Scheduler: "), schedulerCb,
+                startButton, stopButton
+        );
+
+        HBox optionsPanel = new HBox();
+        optionsPanel.setSpacing(10);
+        optionsPanel.setAlignment(Pos.CENTER);
+        VBox.setMargin(optionsPanel, new Insets(0, 10, 10, 10));
+        optionsPanel.getChildren().addAll(
+                new Label("Mode: "), modeCb,
+                interiorCb, vectorCb, cacheCb, progressiveCb, rampCb, antialiasCb
+        );
+
+        HBox statusPanel = new HBox();
+        statusPanel.setSpacing(10);
+        statusPanel.setAlignment(Pos.CENTER);
+        VBox.setMargin(statusPanel, new Insets(10, 10, 0, 10));
+        statusPanel.getChildren().addAll(
+                new Label("Time: "), executionTimeTf, statsTf, heatmapCb
         );
 
         HBox bottomPanel = new HBox();
@@ -64,34 +201,43 @@ public class FractalGui extends VBox implements FractalGenerationListener {
         bottomPanel.setAlignment(Pos.CENTER);
         VBox.setMargin(bottomPanel, new Insets(10));
         bottomPanel.getChildren().addAll(
-                new Label("Time: "), executionTimeTf
-                );
+                new Label("Palette: "), paletteCb, smoothCb, equalizeCb,
+                new Label("View: "), viewportTf, resetButton
+        );
 
         this.getChildren().addAll(
-                topPanel, imagePanel, bottomPanel
+                topPanel, optionsPanel, imagePanel, statusPanel, bottomPanel
         );
     }
 
     /**
-     * This runs the Mandelbrot generator, and displays the results to the screen.
-     * This is called when the start button is clicked.
-     * Currently, all work is done on the event dispatch thread, so the GUI will
-     * freeze.  Your job is to modify this so that the work is done by some number of
-     * worker threads and update the GUI while the computation is running.
-     * Be careful to make sure that ANYTHING that updates the GUI is done on the event
-     * thread ONLY.  The image should be updated regularly during the
-     * process.  The GUI should be responsive throughout and should not freeze.
+     * This runs the fractal generator, and displays the results to the screen.
+     * This is called when the start button is clicked, and when the view is zoomed or panned.
+     * The work is done by the generator's worker threads, so this returns immediately.  The
+     * image is redrawn as tiles finish (imageChanged) and once more when the generation is
+     * complete (imageComplete).  Both events are delivered on the event thread.  A generation
+     * that is still running is cancelled before the settings change, so that none of its tiles
+     * are cached under the new settings.
      */
     private void startButtonAction() {
-        GraphicsContext g = imagePanel.getGraphicsContext2D();
-        g.clearRect(0, 0, IMAGE_WIDTH, IMAGE_HEIGHT);
-
-        FractalGenerator generator = new FractalGenerator(image);
-        generator.addListener(FractalGui.this);
+        generator.cancel();
+        generator.setKernel(kernelCb.getValue());
+        generator.setTileCache(cacheCb.isSelected() ? tileCache : null);
+        generator.setViewport(viewport);
+        generator.setPartition(partitionCb.getValue());
+        generator.setScheduler(schedulerCb.getValue());
+        generator.setInteriorChecking(interiorCb.isSelected());
+        generator.setRenderMode(modeCb.getValue());
+        generator.setVectorized(vectorCb.isSelected());
+        generator.setProgressive(progressiveCb.isSelected());
+        generator.setRampIterations(rampCb.isSelected());
+        generator.setAntialiasing(antialiasCb.isSelected());
 
         // Disable the input elements while generating
-        startButton.setDisable(true);
-        numThreadsTf.setEditable(false);
+        setGenerating(true);
+        stats = null;
+        statsTf.setText("--");
+        statsTf.setTooltip(null);
 
         // Get the number of threads
         int numThreads = Integer.parseInt(numThreadsTf.getText());
@@ -100,6 +246,105 @@ public class FractalGui extends VBox implements FractalGenerationListener {
         generator.generate(numThreads);
     }
 
+    private void stopButtonAction() {
+        generator.cancel();
+        setGenerating(false);
+        executionTimeTf.setText("--");
+    }
+
+    private void setGenerating( boolean generating ) {
+        startButton.setDisable(generating);
+        stopButton.setDisable(!generating);
+        numThreadsTf.setEditable(!generating);
+        partitionCb.setDisable(generating);
+        schedulerCb.setDisable(generating);
+        interiorCb.setDisable(generating);
+        modeCb.setDisable(generating);
+        vectorCb.setDisable(generating);
+        cacheCb.setDisable(generating);
+        progressiveCb.setDisable(generating);
+        rampCb.setDisable(generating);
+        antialiasCb.setDisable(generating);
+    }
+
+    /**
+     * Change the displayed region and start generating it at once.
+     */
+    private void setViewport( Viewport viewport ) {
+        this.viewport = viewport;
+        viewportTf.setText(viewport.toString());
+        startButtonAction();
+    }
+
+    private void scrollAction( ScrollEvent e ) {
+        if( e.getDeltaY() == 0 ) return;
+        double factor = e.getDeltaY() > 0 ? ZOOM_STEP : 1.0 / ZOOM_STEP;
+        setViewport(viewport.zoom(factor, e.getX(), e.getY(), IMAGE_WIDTH, IMAGE_HEIGHT));
+    }
+
+    private void mousePressedAction( MouseEvent e ) {
+        dragStartX = e.getX();
+        dragStartY = e.getY();
+    }
+
+    private void mouseDraggedAction( MouseEvent e ) {
+        // Show the current image shifted while dragging
+        GraphicsContext g = imagePanel.getGraphicsContext2D();
+        g.clearRect(0, 0, IMAGE_WIDTH, IMAGE_HEIGHT);
+        image.draw(g, e.getX() - dragStartX, e.getY() - dragStartY);
+    }
+
+    private void mouseReleasedAction( MouseEvent e ) {
+        double dx = e.getX() - dragStartX, dy = e.getY() - dragStartY;
+        if( dx == 0 && dy == 0 ) return;
+        double xStep = viewport.getXStep(IMAGE_WIDTH, IMAGE_HEIGHT);
+        double yStep = viewport.getYStep(IMAGE_WIDTH, IMAGE_HEIGHT);
+        setViewport(viewport.pan(-dx * xStep, dy * yStep));
+    }
+
+    /**
+     * Recolor the current image with the selected palette and coloring options.  This does not
+     * run the generator again.
+     */
+    private void paletteAction() {
+        image.setColoring(paletteCb.getValue(), smoothCb.isSelected(), equalizeCb.isSelected());
+        redraw();
+    }
+
+    /**
+     * Draw the image, with the heatmap on top if it is selected.
+     */
+    private void redraw() {
+        GraphicsContext g = imagePanel.getGraphicsContext2D();
+        image.draw(g);
+        if( heatmapCb.isSelected() && stats != null ) drawHeatmap(g);
+    }
+
+    /**
+     * Shade every tile of the last generation by its cost per pixel, from blue (cheapest) to
+     * red (most expensive).
+     */
+    private void drawHeatmap( GraphicsContext g ) {
+        List<Tile> tiles = stats.getTiles();
+        double max = 0;
+        for( int i = 0; i < tiles.size(); i++ ) {
+            max = Math.max(max, (double) stats.getTileNanos(i) / tiles.get(i).getPixelCount());
+        }
+        if( max == 0 ) return;
+        for( int i = 0; i < tiles.size(); i++ ) {
+            Tile tile = tiles.get(i);
+            double cost = stats.getTileNanos(i) / (tile.getPixelCount() * max);
+            g.setFill(Color.hsb(240 * (1 - cost), 1, 1, 0.5));
+            if( tile.getRowStride() == 1 ) {
+                g.fillRect(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight());
+            } else {
+                for( int r = 0; r < tile.getHeight(); r++ ) {
+                    g.fillRect(tile.getX(), tile.getRow(r), tile.getWidth(), 1);
+                }
+            }
+        }
+    }
+
     @Override
     public void imageChanged() {
         image.draw( imagePanel.getGraphicsContext2D() );
@@ -107,13 +352,22 @@ public class FractalGui extends VBox implements FractalGenerationListener {
 
     @Override
     public void imageComplete(double time) {
+        // An equalized palette depends on the counts of the whole image
+        if( image.isEqualized() ) image.recolor();
         image.draw(imagePanel.getGraphicsContext2D());
 
         // Enable the input elements
-        startButton.setDisable(false);
-        numThreadsTf.setEditable(true);
+        setGenerating(false);
 
         // Display elapsed time
-        executionTimeTf.setText(String.format("%.3f s", time));
+        executionTimeTf.setText(String.format("%.3f s (%s)", time, generator.getPrecision()));
+    }
+
+    @Override
+    public void generationStats( GenerationStats stats ) {
+        this.stats = stats;
+        statsTf.setText(stats.toString());
+        statsTf.setTooltip(new Tooltip(stats.report()));
+        if( heatmapCb.isSelected() ) redraw();
     }
 }
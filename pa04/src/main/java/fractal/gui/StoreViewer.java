@@ -0,0 +1,284 @@
+package fractal.gui;
+
+import fractal.core.MappedIterationStore;
+import fractal.core.Palette;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A viewer for a MappedIterationStore, which is usually far larger than the screen.  The view
+ * shows the store at a zoom level where each screen pixel stands for step x step pixels of the
+ * store (step is a power of two), sampling one of them.  Scroll to change the level about the
+ * mouse position, drag to pan.
+ *
+ * The view is made of pages of PAGE_SIZE x PAGE_SIZE screen pixels.  A page is read from the
+ * store and colored by a background thread when it first becomes visible, so only the parts
+ * of the file that are looked at are paged in.  The most recently used MAX_PAGES pages are kept.
+ * At most MAX_QUEUED pages wait to be loaded; when the view moves on faster than they load, the
+ * oldest requests are dropped, and requested again if they become visible again.
+ *
+ * This is a window of its own rather than a mode of FractalGui.  FractalGui shows a
+ * FractalImage of the size of the screen that its generator computes again for every view,
+ * while a store holds counts that were computed once, for an image far larger than the screen:
+ * there is no generator, kernel or viewport to change, and the view moves over store pixels.
+ * Only the palette and smooth coloring controls apply to both.
+ */
+public class StoreViewer extends VBox {
+
+    // View dimensions
+    private static final int VIEW_WIDTH = 1024;
+    private static final int VIEW_HEIGHT = 768;
+
+    // The side of a page in screen pixels
+    private static final int PAGE_SIZE = 256;
+
+    // The number of colored pages kept (256 KB each)
+    private static final int MAX_PAGES = 256;
+
+    // The number of page requests that may wait for the loader, more than a view has pages
+    private static final int MAX_QUEUED = 32;
+
+    private final MappedIterationStore store;
+    private final Canvas canvas;
+
+    // Colored pages by key (see pageKey), in access order.  Only used on the event thread.
+    private final LinkedHashMap<Long, WritableImage> pages = new LinkedHashMap<>(64, 0.75f, true);
+
+    // Pages that are being loaded
+    private final Set<Long> loading = new HashSet<>();
+
+    // Reads and colors pages.  A request that does not fit the queue drops the oldest one.
+    private final ThreadPoolExecutor loader = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED), r -> {
+                Thread thread = new Thread(r, "store-pager");
+                thread.setDaemon(true);
+                return thread;
+            }, this::dropOldest);
+
+    // Incremented when the coloring changes, so that pages colored before are dropped
+    private int coloring;
+
+    // Store pixels per screen pixel, and the largest step, at which the whole store fits
+    private int step;
+    private final int maxStep;
+
+    // The store pixel shown at the upper left corner of the view
+    private double originX, originY;
+
+    // Mouse position at the last drag event
+    private double dragX, dragY;
+
+    private ComboBox<Palette> paletteCb;
+    private CheckBox smoothCb;
+    private Label positionLabel;
+
+    public StoreViewer( MappedIterationStore store ) {
+        this.store = store;
+        this.canvas = new Canvas(VIEW_WIDTH, VIEW_HEIGHT);
+        int fit = 1;
+        while( (long) VIEW_WIDTH * fit < store.getWidth() || (long) VIEW_HEIGHT * fit < store.getHeight() ) {
+            fit *= 2;
+        }
+        this.maxStep = fit;
+        this.step = fit;
+        buildGui();
+        redraw();
+    }
+
+    private void buildGui() {
+        paletteCb = new ComboBox<>();
+        paletteCb.getItems().addAll(Palette.all());
+        paletteCb.setValue(Palette.SUNSET);
+        paletteCb.setOnAction( e -> coloringAction() );
+        smoothCb = new CheckBox("Smooth");
+        smoothCb.setSelected(true);
+        smoothCb.setOnAction( e -> coloringAction() );
+        positionLabel = new Label();
+
+        canvas.setOnScroll(this::scrollAction);
+        canvas.setOnMousePressed(this::mousePressedAction);
+        canvas.setOnMouseDragged(this::mouseDraggedAction);
+
+        HBox bottomPanel = new HBox();
+        bottomPanel.setSpacing(10);
+        bottomPanel.setAlignment(Pos.CENTER);
+        VBox.setMargin(bottomPanel, new Insets(10));
+        bottomPanel.getChildren().addAll(
+                new Label("Palette: "), paletteCb, smoothCb, positionLabel
+        );
+
+        this.getChildren().addAll(canvas, bottomPanel);
+    }
+
+    /**
+     * Stop loading pages and close the store.
+     */
+    public void close() throws IOException {
+        loader.shutdownNow();
+        store.close();
+    }
+
+    private void coloringAction() {
+        coloring++;
+        pages.clear();
+        redraw();
+    }
+
+    private void scrollAction( ScrollEvent e ) {
+        if( e.getDeltaY() == 0 ) return;
+        int newStep = e.getDeltaY() > 0 ? Math.max(1, step / 2) : Math.min(maxStep, step * 2);
+        if( newStep == step ) return;
+
+        // Keep the store pixel under the mouse in place
+        originX += e.getX() * (step - newStep);
+        originY += e.getY() * (step - newStep);
+        step = newStep;
+        redraw();
+    }
+
+    private void mousePressedAction( MouseEvent e ) {
+        dragX = e.getX();
+        dragY = e.getY();
+    }
+
+    private void mouseDraggedAction( MouseEvent e ) {
+        originX -= (e.getX() - dragX) * step;
+        originY -= (e.getY() - dragY) * step;
+        dragX = e.getX();
+        dragY = e.getY();
+        redraw();
+    }
+
+    /**
+     * Draw the visible pages that are loaded and request the others.
+     */
+    private void redraw() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.setFill(Color.rgb(64, 64, 64));
+        g.fillRect(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+
+        // Page columns and rows of the store at this level
+        double left = originX / step, top = originY / step;
+        long pageStore = (long) PAGE_SIZE * step;
+        int columns = (int) ((store.getWidth() + pageStore - 1) / pageStore);
+        int rows = (int) ((store.getHeight() + pageStore - 1) / pageStore);
+        int firstColumn = Math.max(0, (int) Math.floor(left / PAGE_SIZE));
+        int firstRow = Math.max(0, (int) Math.floor(top / PAGE_SIZE));
+        int lastColumn = Math.min(columns - 1, (int) Math.floor((left + VIEW_WIDTH) / PAGE_SIZE));
+        int lastRow = Math.min(rows - 1, (int) Math.floor((top + VIEW_HEIGHT) / PAGE_SIZE));
+
+        for( int row = firstRow; row <= lastRow; row++ ) {
+            for( int column = firstColumn; column <= lastColumn; column++ ) {
+                long key = pageKey(step, column, row);
+                WritableImage page = pages.get(key);
+                if( page != null ) {
+                    g.drawImage(page, column * PAGE_SIZE - left, row * PAGE_SIZE - top);
+                } else {
+                    request(key, step, column, row);
+                }
+            }
+        }
+        positionLabel.setText(String.format("%dx%d, 1:%d, at (%.0f, %.0f)",
+                store.getWidth(), store.getHeight(), step, originX, originY));
+    }
+
+    /**
+     * The key of a page: its level and position.  Page positions are below 2^24 for any store.
+     */
+    private static long pageKey( int step, int column, int row ) {
+        return ((long) Integer.numberOfTrailingZeros(step) << 48) | ((long) column << 24) | row;
+    }
+
+    /**
+     * Load a page in the background, unless it is already being loaded.
+     */
+    private void request( long key, int step, int column, int row ) {
+        if( !loading.add(key) ) return;
+        Palette palette = paletteCb.getValue();
+        boolean smooth = smoothCb.isSelected();
+        int version = coloring;
+        loader.execute(new PageRequest(key, () -> {
+            int[] argb = loadPage(step, column, row, palette, smooth);
+            Platform.runLater( () -> {
+                loading.remove(key);
+                if( version != coloring ) return;
+                WritableImage page = new WritableImage(PAGE_SIZE, PAGE_SIZE);
+                page.getPixelWriter().setPixels(0, 0, PAGE_SIZE, PAGE_SIZE, PixelFormat.getIntArgbInstance(), argb, 0, PAGE_SIZE);
+                pages.put(key, page);
+                Iterator<Long> it = pages.keySet().iterator();
+                while( pages.size() > MAX_PAGES && it.hasNext() ) {
+                    it.next();
+                    it.remove();
+                }
+                redraw();
+            });
+        }));
+    }
+
+    /**
+     * Make room in the full queue of the loader by dropping its oldest request.  Called on the
+     * event thread, by execute.
+     */
+    private void dropOldest( Runnable request, ThreadPoolExecutor executor ) {
+        if( executor.isShutdown() ) return;
+        Runnable oldest = executor.getQueue().poll();
+        if( oldest != null ) loading.remove(((PageRequest) oldest).key);
+        executor.execute(request);
+    }
+
+    /**
+     * A page waiting to be loaded.
+     */
+    private static final class PageRequest implements Runnable {
+        final long key;
+        private final Runnable load;
+
+        PageRequest( long key, Runnable load ) {
+            this.key = key;
+            this.load = load;
+        }
+
+        @Override
+        public void run() { load.run(); }
+    }
+
+    /**
+     * Read and color a page.  Parts of the page beyond the store are transparent.
+     */
+    private int[] loadPage( int step, int column, int row, Palette palette, boolean smooth ) {
+        int[] argb = new int[PAGE_SIZE * PAGE_SIZE];
+        int[] iterations = new int[PAGE_SIZE];
+        float[] fractions = new float[PAGE_SIZE];
+        long x0 = (long) column * PAGE_SIZE * step, y0 = (long) row * PAGE_SIZE * step;
+        int count = (int) Math.min(PAGE_SIZE, (store.getWidth() - x0 + step - 1) / step);
+        for( int j = 0; j < PAGE_SIZE; j++ ) {
+            long y = y0 + (long) j * step;
+            if( y >= store.getHeight() ) break;
+            store.readRow((int) x0, (int) y, step, count, iterations, fractions, 0);
+            palette.colorize(iterations, smooth ? fractions : null, 0, argb, j * PAGE_SIZE, count);
+        }
+        return argb;
+    }
+}